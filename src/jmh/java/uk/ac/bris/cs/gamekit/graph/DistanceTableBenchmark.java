@@ -0,0 +1,54 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.scotlandyard.model.BenchmarkPositions;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Building a {@link DistanceTable} for the standard map and looking up every
+ * pair of nodes in it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistanceTableBenchmark {
+
+	private Graph<Integer, Transport> graph;
+	private DistanceTable table;
+
+	@Setup
+	public void setUp() {
+		graph = BenchmarkPositions.graph();
+		table = DistanceTable.of(graph);
+	}
+
+	@Benchmark
+	public Object build() {
+		return DistanceTable.of(graph, transport -> transport != Transport.Boat);
+	}
+
+	@Benchmark
+	public long distanceAllPairs() {
+		long sum = 0;
+		for (int from = 0; from < table.size(); from++)
+			for (int to = 0; to < table.size(); to++)
+				sum += table.distance(from, to);
+		return sum;
+	}
+
+}
@@ -0,0 +1,70 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.BenchmarkPositions;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Fixed depth searches of {@link MrXSearch}, the search behind
+ * {@link SionsAngel}, on a single thread. <br>
+ * Every search starts from an empty transposition table, so results do not
+ * depend on what earlier iterations left behind.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+	private static final int TABLE_BITS = 18;
+
+	@Param({ "OPENING", "MIDGAME" })
+	BenchmarkPositions position;
+
+	@Param({ "2", "3" }) // Depth 4 takes seconds per search, pass -p depth=4 to include it
+	int depth;
+
+	@Param({ "JOINT", "PARANOID", "BEST_REPLY" })
+	String mode; // A MrXSearch.Mode, the generated code cannot see the package private type
+
+	private GameState state;
+	private DistanceTable distances;
+	private ZobristKeys keys;
+	private MrXSearch search;
+
+	@Setup(Level.Trial)
+	public void setUpPosition() {
+		state = GameState.of(position.create(), position.mrXLocation());
+		distances = DistanceTable.of(state.graph(), transport -> transport != Transport.Boat);
+		keys = ZobristKeys.of(state);
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpSearch() {
+		search = new MrXSearch(state.copy().hashWith(keys), distances,
+				new TranspositionTable(TABLE_BITS), MrXSearch.Mode.valueOf(mode), 1);
+	}
+
+	@Benchmark
+	public long search() {
+		return search.search(depth);
+	}
+
+}
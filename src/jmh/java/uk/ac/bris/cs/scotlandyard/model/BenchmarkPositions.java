@@ -0,0 +1,110 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+
+/**
+ * Positions from the recorded game in
+ * {@code ModelSixPlayerPlayOutTest#testDetectiveWon}, set up as fresh models
+ * whose players never answer, so benchmarks can call into them directly
+ */
+public enum BenchmarkPositions {
+
+	/**
+	 * The starting position: Mr.X still holds both double move tickets
+	 */
+	OPENING(0,
+			new int[] { 127, 53, 94, 155, 29, 123 },
+			new int[][] {
+					{ 4, 3, 3, 2, 5 },
+					{ 11, 8, 4, 0, 0 },
+					{ 11, 8, 4, 0, 0 },
+					{ 11, 8, 4, 0, 0 },
+					{ 11, 8, 4, 0, 0 },
+					{ 11, 8, 4, 0, 0 } }),
+
+	/**
+	 * After four rotations (six rounds), detectives closing in around Mr.X
+	 * who has used up his double moves
+	 */
+	MIDGAME(6,
+			new int[] { 142, 127, 67, 141, 108, 111 },
+			new int[][] {
+					{ 15, 8, 4, 0, 2 },
+					{ 8, 7, 4, 0, 0 },
+					{ 10, 6, 3, 0, 0 },
+					{ 8, 7, 4, 0, 0 },
+					{ 8, 7, 4, 0, 0 },
+					{ 8, 7, 4, 0, 0 } });
+
+	private static final Colour[] COLOURS = {
+			Colour.Black, Colour.Blue, Colour.Green, Colour.Red, Colour.White, Colour.Yellow };
+	private static final Player IDLE = (view, location, moves, callback) -> {};
+
+	private static Graph<Integer, Transport> graph;
+
+	private final int round;
+	private final int[] locations;
+	private final int[][] tickets; // Taxi, bus, underground, double, secret
+
+	BenchmarkPositions(int round, int[] locations, int[][] tickets) {
+		this.round = round;
+		this.locations = locations;
+		this.tickets = tickets;
+	}
+
+	/**
+	 * @return the standard map, read once
+	 */
+	public static synchronized Graph<Integer, Transport> graph() {
+		if (graph == null) {
+			try {
+				graph = StandardGame.standardGraph();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Creates a model at this position; as the model always starts at round
+	 * zero, the rounds already played are dropped from the reveal schedule
+	 *
+	 * @return a new model, Mr.X to move
+	 */
+	public ScotlandYardModel create() {
+		PlayerConfiguration[] players = new PlayerConfiguration[COLOURS.length];
+		for (int i = 0; i < COLOURS.length; i++) {
+			players[i] = new PlayerConfiguration.Builder(COLOURS[i])
+					.at(locations[i])
+					.with(tickets(tickets[i]))
+					.using(IDLE)
+					.build();
+		}
+		return new ScotlandYardModel(StandardGame.ROUNDS.subList(round, StandardGame.ROUNDS.size()),
+				graph(), players[0], players[1], players[2], players[3], players[4], players[5]);
+	}
+
+	/**
+	 * @return where Mr.X really is
+	 */
+	public int mrXLocation() {
+		return locations[0];
+	}
+
+	private static Map<Ticket, Integer> tickets(int[] counts) {
+		Map<Ticket, Integer> map = new EnumMap<>(Ticket.class);
+		map.put(Ticket.Taxi, counts[0]);
+		map.put(Ticket.Bus, counts[1]);
+		map.put(Ticket.Underground, counts[2]);
+		map.put(Ticket.Double, counts[3]);
+		map.put(Ticket.Secret, counts[4]);
+		return map;
+	}
+
+}
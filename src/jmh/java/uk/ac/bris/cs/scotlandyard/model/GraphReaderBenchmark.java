@@ -0,0 +1,52 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing the standard map with {@link ScotlandYardGraphReader}, the lines are
+ * read into memory beforehand
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GraphReaderBenchmark {
+
+	private List<String> lines;
+
+	@Setup
+	public void setUp() throws IOException {
+		try (InputStream stream = getClass().getClassLoader().getResourceAsStream("graph.txt")) {
+			if (stream == null) throw new IOException("Resource graph.txt not found");
+			lines = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
+					.lines()
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Benchmark
+	public Object fromLines() {
+		return ScotlandYardGraphReader.fromLines(lines);
+	}
+
+}
@@ -0,0 +1,98 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Move generation and turn handling in {@link ScotlandYardModel}. <br>
+ * {@link ScotlandYardModel#validMoves(Colour)} and
+ * {@link ScotlandYardModel#isGameOver()} are memoized per state, so they are
+ * measured on a model made fresh for every call ({@link Fresh}), with what the
+ * constructor memoized forgotten, since it already asks whether the game is
+ * over; the model is built outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	@State(Scope.Thread)
+	public static class Position {
+
+		@Param({ "OPENING", "MIDGAME" })
+		BenchmarkPositions position;
+
+		ScotlandYardModel model;
+		long[] buffer;
+
+		@Setup
+		public void setUp() {
+			model = position.create();
+			buffer = new long[model.maxMoves()];
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Fresh {
+
+		@Param({ "OPENING", "MIDGAME" })
+		BenchmarkPositions position;
+
+		ScotlandYardModel model;
+		Move mrXMove;
+
+		@Setup(Level.Invocation)
+		public void setUp() {
+			model = position.create();
+			mrXMove = model.validMoves(Colour.Black).iterator().next();
+			model = position.create(); // So the measured calls do not hit the memoized moves
+			model.changed(); // Nor the game over check the constructor made
+		}
+	}
+
+	@Benchmark
+	public int packedMrXMoves(Position state) {
+		return state.model.validMoves(Colour.Black, state.buffer);
+	}
+
+	@Benchmark
+	public int packedDetectiveMoves(Position state) {
+		return state.model.validMoves(Colour.Blue, state.buffer);
+	}
+
+	@Benchmark
+	public Object generateMoves(Position state) {
+		return state.model.generateMoves(Colour.Black, state.position.mrXLocation());
+	}
+
+	@Benchmark
+	public Object validMoves(Fresh state) {
+		return state.model.validMoves(Colour.Black);
+	}
+
+	@Benchmark
+	public boolean isGameOver(Fresh state) {
+		return state.model.isGameOver();
+	}
+
+	@Benchmark
+	public int accept(Fresh state) {
+		state.model.accept(state.mrXMove);
+		return state.model.getCurrentRound();
+	}
+
+}
@@ -0,0 +1,190 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * All-pairs shortest path table counting hops (edges) between the nodes of a
+ * graph whose node values are non-negative integers. <br>
+ * The table is computed once with a breadth first search from every node and
+ * afterwards answers {@link #distance(int, int)} with a single array lookup.
+ * Memory grows with the square of the largest node value, two bytes per pair,
+ * so this is intended for maps of a few thousand nodes at most and refuses
+ * graphs larger than {@link #MAX_SIZE}.
+ */
+public final class DistanceTable {
+
+	/**
+	 * Distance returned when there is no path between two nodes
+	 */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	/**
+	 * Largest {@link #size()} a table can have, so every distance fits in a
+	 * short; a table this size takes 2 GB
+	 */
+	public static final int MAX_SIZE = Short.MAX_VALUE - 1;
+
+	private static final short NO_PATH = -1;
+
+	private final int size;
+	private final short[] distances;
+
+	private DistanceTable(int size, short[] distances) {
+		this.size = size;
+		this.distances = distances;
+	}
+
+	/**
+	 * Computes the distance table using all edges of the graph
+	 *
+	 * @param graph the graph; not null
+	 * @param <D> the type for {@link Edge} data
+	 * @return the table; never null
+	 */
+	public static <D> DistanceTable of(Graph<Integer, D> graph) {
+		return of(graph, data -> true);
+	}
+
+	/**
+	 * Computes the distance table only using edges whose data passes the given
+	 * filter
+	 *
+	 * @param graph the graph; not null
+	 * @param edges the filter for edges that may be travelled on; not null
+	 * @param <D> the type for {@link Edge} data
+	 * @return the table; never null
+	 */
+	public static <D> DistanceTable of(Graph<Integer, D> graph, Predicate<? super D> edges) {
+		Objects.requireNonNull(graph);
+		Objects.requireNonNull(edges);
+		int size = 0;
+		for (Node<Integer> node : graph.getNodes()) {
+			if (node.value() < 0) throw new IllegalArgumentException(
+					"Node values must not be negative, got " + node);
+			size = Math.max(size, node.value() + 1);
+		}
+		if (size > MAX_SIZE) throw new IllegalArgumentException(
+				"Graph is too large for a distance table(" + size + " nodes)");
+
+		// flatten the adjacency once so each search does not touch the graph
+		int[][] adjacency = new int[size][];
+		for (Node<Integer> node : graph.getNodes()) {
+			int[] neighbours = new int[graph.getEdgesFrom(node).size()];
+			int count = 0;
+			for (Edge<Integer, D> edge : graph.getEdgesFrom(node))
+				if (edges.test(edge.data())) neighbours[count++] = edge.destination().value();
+			adjacency[node.value()] = Arrays.copyOf(neighbours, count);
+		}
+
+		return search(size, adjacency);
+	}
+
+	/**
+	 * Computes the distance table only using the layers with the given data,
+	 * without looking at the edges of any other layer
+	 *
+	 * @param graph the graph; not null
+	 * @param data the edge data that may be travelled on; not null
+	 * @param <D> the type for {@link Edge} data
+	 * @return the table; never null
+	 */
+	public static <D extends Enum<D>> DistanceTable of(IntGraph<D> graph, Set<D> data) {
+		Objects.requireNonNull(graph);
+		Objects.requireNonNull(data);
+		int size = graph.size();
+		if (size > MAX_SIZE) throw new IllegalArgumentException(
+				"Graph is too large for a distance table(" + size + " nodes)");
+		int[][] adjacency = new int[size][];
+		for (int node = 0; node < size; node++) {
+			if (!graph.contains(node)) continue;
+			int count = 0;
+			for (D kind : data) count += graph.layer(kind).degree(node);
+			int[] neighbours = new int[count];
+			count = 0;
+			for (D kind : data) {
+				IntGraph.Layer<D> layer = graph.layer(kind);
+				for (int edge = layer.start(node); edge < layer.end(node); edge++)
+					neighbours[count++] = layer.target(edge);
+			}
+			adjacency[node] = neighbours;
+		}
+		return search(size, adjacency);
+	}
+
+	// Breadth first search from every node with an adjacency row
+	private static DistanceTable search(int size, int[][] adjacency) {
+		short[] distances = new short[size * size];
+		Arrays.fill(distances, NO_PATH);
+		int[] queue = new int[size];
+		for (int source = 0; source < size; source++) {
+			if (adjacency[source] == null) continue;
+			int row = source * size;
+			int head = 0;
+			int tail = 0;
+			distances[row + source] = 0;
+			queue[tail++] = source;
+			while (head < tail) {
+				int current = queue[head++];
+				short next = (short) (distances[row + current] + 1);
+				for (int neighbour : adjacency[current]) {
+					if (distances[row + neighbour] != NO_PATH) continue;
+					distances[row + neighbour] = next;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+		return new DistanceTable(size, distances);
+	}
+
+	/**
+	 * Computes one distance table per kind of edge data, each only using edges
+	 * with that data
+	 *
+	 * @param graph the graph; not null
+	 * @param type the enum type of the edge data; not null
+	 * @param <D> the type for {@link Edge} data
+	 * @return an immutable map with a table for every constant of the enum;
+	 *         never null
+	 */
+	public static <D extends Enum<D>> Map<D, DistanceTable> byEdgeData(Graph<Integer, D> graph,
+			Class<D> type) {
+		IntGraph<D> layers = IntGraph.of(graph, type);
+		Map<D, DistanceTable> tables = new EnumMap<>(type);
+		for (D data : type.getEnumConstants())
+			tables.put(data, of(layers, Collections.singleton(data)));
+		return Collections.unmodifiableMap(tables);
+	}
+
+	/**
+	 * Finds the number of edges on the shortest path between two nodes
+	 *
+	 * @param from the value of the source node
+	 * @param to the value of the destination node
+	 * @return number of hops or {@link #UNREACHABLE} if there is no path or
+	 *         either node is not in the graph
+	 */
+	public int distance(int from, int to) {
+		if (from < 0 || to < 0 || from >= size || to >= size) return UNREACHABLE;
+		short distance = distances[from * size + to];
+		return distance == NO_PATH ? UNREACHABLE : distance;
+	}
+
+	/**
+	 * @return one more than the largest node value this table covers
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "DistanceTable{" + "size=" + size + '}';
+	}
+
+}
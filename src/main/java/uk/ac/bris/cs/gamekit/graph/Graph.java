@@ -4,7 +4,11 @@ import java.util.Collection;
 import java.util.List;
 
 /**
- * A minimal graph data structure interface
+ * A minimal graph data structure interface <br>
+ * The collections returned by the getters are read-only views, not
+ * snapshots: nodes and edges added to the graph later show up in them. Copy
+ * a collection to keep the graph as it was, or to add to the graph while
+ * iterating it.
  * 
  * @param <V> the type for {@link Node} values
  * @param <D> the type for {@link Edge} data
@@ -43,13 +47,13 @@ public interface Graph<V, D> {
 	boolean containsNode(V value);
 
 	/**
-	 * @return immutable list of all nodes in this graph in insertion order;
+	 * @return read-only view of all nodes in this graph in insertion order;
 	 *         could be empty but never null
 	 */
 	List<Node<V>> getNodes();
 
 	/**
-	 * @return immutable set of all edges contained in this graph in no
+	 * @return read-only view of all edges contained in this graph in no
 	 *         particular order; could be empty but never null
 	 */
 	Collection<Edge<V, D>> getEdges();
@@ -58,8 +62,8 @@ public interface Graph<V, D> {
 	 * Finds all edges coming from the given source node
 	 * 
 	 * @param source the source node
-	 * @return immutable set of all edges found in no particular order; could be
-	 *         empty but never null
+	 * @return read-only view of all edges found in no particular order; could
+	 *         be empty but never null
 	 */
 	Collection<Edge<V, D>> getEdgesFrom(Node<V> source);
 
@@ -67,8 +71,8 @@ public interface Graph<V, D> {
 	 * Finds all edges going to the given destination node
 	 *
 	 * @param destination the destination node
-	 * @return immutable set of all edges found in no particular order; could be
-	 *         empty but never null
+	 * @return read-only view of all edges found in no particular order; could
+	 *         be empty but never null
 	 */
 	Collection<Edge<V, D>> getEdgesTo(Node<V> destination);
 
@@ -0,0 +1,420 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of a graph whose node values are non-negative
+ * integers and whose edge data is an enum, stored in compressed sparse row
+ * form. <br>
+ * The edges from node {@code n} are the indices {@code start(n)} (inclusive)
+ * to {@code end(n)} (exclusive) into the {@link #target(int)} and
+ * {@link #data(int)} arrays, in the order the source graph returned them.
+ * Walking them touches three flat arrays and allocates nothing. <br>
+ * {@link #asGraph()} gives a read only {@link Graph} over the same snapshot
+ * for code written against the object graph; its lists are built once, so
+ * calls do not copy. <br>
+ * The edges are also kept grouped by data, so {@link #layer(Enum)} gives the
+ * sub-graph of the edges with one kind of data, such as one transport, without
+ * testing the data of every edge. All the layers share one array of targets,
+ * built with the snapshot.
+ *
+ * @param <D> the type for {@link Edge} data
+ */
+public final class IntGraph<D extends Enum<D>> implements Serializable {
+
+	/**
+	 * How far past twice the node count node values may go; the arrays are
+	 * indexed by value, so sparse values would waste memory on empty rows
+	 */
+	public static final int SPARE_VALUES = 64;
+
+	private final D[] constants;
+	private final int[] offsets; // node -> first edge, offsets[size] is the edge count
+	private final int[] targets;
+	private final byte[] data; // ordinal of the edge data
+	private final int[] layerOffsets; // node * kinds + ordinal -> first edge in layerTargets
+	private final int[] layerTargets; // targets grouped by node, then data, otherwise in order
+	private final View<D> view;
+	private final List<Layer<D>> layers;
+
+	private IntGraph(D[] constants, int[] offsets, int[] targets, byte[] data, View<D> view) {
+		this.constants = constants;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.data = data;
+		this.view = view;
+		int kinds = constants.length;
+		int size = offsets.length - 1;
+		this.layerOffsets = new int[size * kinds + 1];
+		for (int node = 0; node < size; node++)
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++)
+				layerOffsets[node * kinds + data[edge] + 1]++;
+		for (int i = 0; i < size * kinds; i++)
+			layerOffsets[i + 1] += layerOffsets[i];
+		this.layerTargets = new int[targets.length];
+		int[] next = Arrays.copyOf(layerOffsets, size * kinds);
+		for (int node = 0; node < size; node++)
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++)
+				layerTargets[next[node * kinds + data[edge]]++] = targets[edge];
+		List<Layer<D>> layers = new ArrayList<>();
+		for (D constant : constants)
+			layers.add(new Layer<>(this, constant));
+		this.layers = Collections.unmodifiableList(layers);
+	}
+
+	/**
+	 * Takes a snapshot of the graph; later changes to it are not seen
+	 *
+	 * @param graph the graph; not null, every node value must be non-negative
+	 *        and below twice the number of nodes plus {@link #SPARE_VALUES},
+	 *        and every edge must have data
+	 * @param type the enum type of the edge data; not null
+	 * @param <D> the type for {@link Edge} data
+	 * @return the snapshot; never null
+	 * @throws IllegalArgumentException if a node value is negative or too
+	 *         large
+	 */
+	public static <D extends Enum<D>> IntGraph<D> of(Graph<Integer, D> graph, Class<D> type) {
+		Objects.requireNonNull(graph);
+		D[] constants = type.getEnumConstants();
+		if (constants.length > Byte.MAX_VALUE) throw new IllegalArgumentException(
+				type + " has too many constants(" + constants.length + ")");
+		List<Node<Integer>> nodes = graph.getNodes();
+		long limit = Math.min(2L * nodes.size() + SPARE_VALUES,
+				(Integer.MAX_VALUE - 1) / Math.max(1, constants.length));
+		int size = 0;
+		int edges = 0;
+		for (Node<Integer> node : nodes) {
+			if (node.value() < 0) throw new IllegalArgumentException(
+					"Node values must not be negative, got " + node);
+			if (node.value() >= limit) throw new IllegalArgumentException("Node values of "
+					+ nodes.size() + " nodes must be below " + limit + ", got " + node);
+			size = Math.max(size, node.value() + 1);
+			edges += graph.getEdgesFrom(node).size();
+		}
+
+		int[] degrees = new int[size];
+		for (Node<Integer> node : nodes)
+			degrees[node.value()] = graph.getEdgesFrom(node).size();
+		int[] offsets = new int[size + 1];
+		for (int node = 0; node < size; node++)
+			offsets[node + 1] = offsets[node] + degrees[node];
+		int[] targets = new int[edges];
+		byte[] data = new byte[edges];
+		for (Node<Integer> node : nodes) {
+			int edge = offsets[node.value()];
+			for (Edge<Integer, D> e : graph.getEdgesFrom(node)) {
+				targets[edge] = e.destination().value();
+				data[edge] = (byte) Objects.requireNonNull(e.data(), "edge data").ordinal();
+				edge++;
+			}
+		}
+		return new IntGraph<>(constants, offsets, targets, data, new View<>(graph, size));
+	}
+
+	/**
+	 * @return one more than the largest node value; every node value is below
+	 *         this
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * @return number of edges, counting both directions of an undirected edge
+	 */
+	public int edges() {
+		return targets.length;
+	}
+
+	/**
+	 * @param node the node value
+	 * @return true if the graph has a node with this value
+	 */
+	public boolean contains(int node) {
+		return view.node(node) != null;
+	}
+
+	/**
+	 * @param node the node value, must be below {@link #size()}
+	 * @return index of the first edge from the node
+	 */
+	public int start(int node) {
+		return offsets[node];
+	}
+
+	/**
+	 * @param node the node value, must be below {@link #size()}
+	 * @return index one past the last edge from the node
+	 */
+	public int end(int node) {
+		return offsets[node + 1];
+	}
+
+	/**
+	 * @param node the node value, must be below {@link #size()}
+	 * @return number of edges from the node
+	 */
+	public int degree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * @param edge the edge index
+	 * @return the value of the edge's destination node
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge the edge index
+	 * @return the ordinal of the edge's data
+	 */
+	public int ordinal(int edge) {
+		return data[edge];
+	}
+
+	/**
+	 * @param edge the edge index
+	 * @return the edge's data; never null
+	 */
+	public D data(int edge) {
+		return constants[data[edge]];
+	}
+
+	/**
+	 * @return a read only graph with the same nodes and edges as the graph
+	 *         this was made from; adding to it throws
+	 *         {@link UnsupportedOperationException}
+	 */
+	public Graph<Integer, D> asGraph() {
+		return view;
+	}
+
+	/**
+	 * @param data the edge data; not null
+	 * @return the sub-graph of the edges with this data; never null
+	 */
+	public Layer<D> layer(D data) {
+		return layers.get(data.ordinal());
+	}
+
+	/**
+	 * @return a layer for every constant of the edge data's enum, in ordinal
+	 *         order; never null
+	 */
+	public List<Layer<D>> layers() {
+		return layers;
+	}
+
+	@Override
+	public String toString() {
+		return "IntGraph{" + "size=" + size() + ", edges=" + edges() + '}';
+	}
+
+	/**
+	 * The edges of an {@link IntGraph} with one kind of data, over the same
+	 * nodes. <br>
+	 * The edges from node {@code n} are the indices {@code start(n)} (inclusive)
+	 * to {@code end(n)} (exclusive) into {@link #target(int)}, in the order the
+	 * whole graph has them; edge indices of a layer are not edge indices of the
+	 * whole graph.
+	 *
+	 * @param <D> the type for {@link Edge} data
+	 */
+	public static final class Layer<D extends Enum<D>> implements Serializable {
+
+		private final IntGraph<D> graph;
+		private final D data;
+		private final int ordinal;
+		private final int kinds;
+		private transient volatile Graph<Integer, D> view;
+
+		private Layer(IntGraph<D> graph, D data) {
+			this.graph = graph;
+			this.data = data;
+			this.ordinal = data.ordinal();
+			this.kinds = graph.constants.length;
+		}
+
+		/**
+		 * @return the data of every edge in the layer; never null
+		 */
+		public D data() {
+			return data;
+		}
+
+		/**
+		 * @return the graph this is a layer of; never null
+		 */
+		public IntGraph<D> graph() {
+			return graph;
+		}
+
+		/**
+		 * @param node the node value, must be below {@link IntGraph#size()}
+		 * @return index of the node's first edge in the layer
+		 */
+		public int start(int node) {
+			return graph.layerOffsets[node * kinds + ordinal];
+		}
+
+		/**
+		 * @param node the node value, must be below {@link IntGraph#size()}
+		 * @return index one past the node's last edge in the layer
+		 */
+		public int end(int node) {
+			return graph.layerOffsets[node * kinds + ordinal + 1];
+		}
+
+		/**
+		 * @param node the node value, must be below {@link IntGraph#size()}
+		 * @return number of the node's edges in the layer
+		 */
+		public int degree(int node) {
+			return end(node) - start(node);
+		}
+
+		/**
+		 * @param edge the edge index in the layer
+		 * @return the value of the edge's destination node
+		 */
+		public int target(int edge) {
+			return graph.layerTargets[edge];
+		}
+
+		/**
+		 * @return a read only graph with all the nodes of the whole graph and
+		 *         only the edges of this layer, sharing the whole graph's
+		 *         {@link Node} and {@link Edge} objects; built on first use
+		 */
+		public Graph<Integer, D> asGraph() {
+			Graph<Integer, D> view = this.view;
+			if (view == null) this.view = view = new View<>(graph.view, graph.size(), data);
+			return view;
+		}
+
+		@Override
+		public String toString() {
+			return "Layer{" + "data=" + data + ", graph=" + graph + '}';
+		}
+
+	}
+
+	// The object graph, with every list built up front
+	private static final class View<D> extends AbstractGraph<Integer, D>
+			implements
+			Graph<Integer, D>,
+			Serializable {
+
+		private final List<Node<Integer>> nodes;
+		private final List<Edge<Integer, D>> edges;
+		private final List<Node<Integer>> byValue;
+		private final List<List<Edge<Integer, D>>> from;
+		private final List<List<Edge<Integer, D>>> to;
+
+		View(Graph<Integer, D> graph, int size) {
+			this(graph, size, null);
+		}
+
+		// Only the edges with the given data, or every edge for null
+		View(Graph<Integer, D> graph, int size, D data) {
+			nodes = Collections.unmodifiableList(new ArrayList<>(graph.getNodes()));
+			edges = Collections.unmodifiableList(filter(graph.getEdges(), data));
+			byValue = new ArrayList<>(Collections.nCopies(size, null));
+			from = new ArrayList<>(Collections.nCopies(size, Collections.emptyList()));
+			to = new ArrayList<>(Collections.nCopies(size, Collections.emptyList()));
+			for (Node<Integer> node : nodes) {
+				byValue.set(node.value(), node);
+				from.set(node.value(),
+						Collections.unmodifiableList(filter(graph.getEdgesFrom(node), data)));
+				to.set(node.value(),
+						Collections.unmodifiableList(filter(graph.getEdgesTo(node), data)));
+			}
+		}
+
+		private static <D> List<Edge<Integer, D>> filter(Collection<Edge<Integer, D>> edges,
+				D data) {
+			List<Edge<Integer, D>> kept = new ArrayList<>(edges.size());
+			for (Edge<Integer, D> edge : edges)
+				if (data == null || data.equals(edge.data())) kept.add(edge);
+			return kept;
+		}
+
+		Node<Integer> node(int value) {
+			return value >= 0 && value < byValue.size() ? byValue.get(value) : null;
+		}
+
+		@Override
+		public void addNode(Node<Integer> node) {
+			throw new UnsupportedOperationException(
+					"Adding node is not supported in an IntGraph");
+		}
+
+		@Override
+		public void addEdge(Edge<Integer, D> edge) {
+			throw new UnsupportedOperationException(
+					"Adding edge is not supported in an IntGraph");
+		}
+
+		@Override
+		public Node<Integer> getNode(Integer value) {
+			return node(value);
+		}
+
+		@Override
+		public boolean containsNode(Integer value) {
+			return node(value) != null;
+		}
+
+		@Override
+		public List<Node<Integer>> getNodes() {
+			return nodes;
+		}
+
+		@Override
+		public Collection<Edge<Integer, D>> getEdges() {
+			return edges;
+		}
+
+		@Override
+		public Collection<Edge<Integer, D>> getEdgesFrom(Node<Integer> source) {
+			return edgesOf(from, source);
+		}
+
+		@Override
+		public Collection<Edge<Integer, D>> getEdgesTo(Node<Integer> destination) {
+			return edgesOf(to, destination);
+		}
+
+		private List<Edge<Integer, D>> edgesOf(List<List<Edge<Integer, D>>> lists,
+				Node<Integer> node) {
+			if (node == null) throw new NullPointerException("node == null");
+			return node(node.value()) == null ? Collections.emptyList() : lists.get(node.value());
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return nodes.isEmpty();
+		}
+
+		@Override
+		public int size() {
+			return nodes.size();
+		}
+
+		@Override
+		public String toString() {
+			return "IntGraph{" + "nodes=" + nodes + ", edges=" + edges + '}';
+		}
+
+	}
+
+}
@@ -0,0 +1,263 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Neighbour bitmasks for a graph whose node values are non-negative integers
+ * and whose edge data is an enum, one mask per node and kind of edge data.
+ * <br>
+ * Sets of nodes are {@code long[]} bitmasks of {@link #words()} words, node
+ * {@code n} being bit {@code n % 64} of word {@code n / 64} as in
+ * {@link java.util.BitSet#toLongArray()}. Kinds of edge data are selected with
+ * an {@code int} mask holding bit {@code 1 << ordinal} for each wanted
+ * constant, see {@link #kind(Enum)}. <br>
+ * {@link #step(long[], int, long[], long[])} moves a whole set of nodes along
+ * one edge with a few word-wide ORs per node, and
+ * {@link #reachable(long[], int[], int, int, int, long[], boolean, long[])}
+ * follows several edges while keeping to a budget of edges per kind. Memory
+ * grows with the square of the largest node value times
+ * the number of kinds, so this is intended for maps of a few thousand nodes at
+ * most; graphs whose masks would not fit in one array are rejected.
+ *
+ * @param <D> the type for {@link Edge} data
+ */
+public final class NeighbourMasks<D extends Enum<D>> {
+
+	private final int size;
+	private final int words;
+	private final int kinds;
+	private final long[] masks; // [(node * kinds + ordinal) * words + word]
+
+	private NeighbourMasks(int size, int kinds, long[] masks) {
+		this.size = size;
+		this.words = words(size);
+		this.kinds = kinds;
+		this.masks = masks;
+	}
+
+	/**
+	 * Computes the masks of every node
+	 *
+	 * @param graph the graph; not null, every node value must be non-negative
+	 *        and every edge must have data
+	 * @param type the enum type of the edge data; not null, with at most 32
+	 *        constants
+	 * @param <D> the type for {@link Edge} data
+	 * @return the masks; never null
+	 * @throws IllegalArgumentException if the masks would not fit in one array
+	 */
+	public static <D extends Enum<D>> NeighbourMasks<D> of(Graph<Integer, D> graph,
+			Class<D> type) {
+		Objects.requireNonNull(graph);
+		int kinds = type.getEnumConstants().length;
+		if (kinds > Integer.SIZE) throw new IllegalArgumentException(
+				type + " has too many constants(" + kinds + ")");
+		int size = 0;
+		for (Node<Integer> node : graph.getNodes()) {
+			if (node.value() < 0) throw new IllegalArgumentException(
+					"Node values must not be negative, got " + node);
+			size = Math.max(size, node.value() + 1);
+		}
+		int words = words(size);
+		long length = (long) size * kinds * words;
+		if (length > Integer.MAX_VALUE - 8) throw new IllegalArgumentException(
+				"Graph is too large for neighbour masks(" + size + " nodes)");
+		long[] masks = new long[(int) length];
+		for (Node<Integer> node : graph.getNodes()) {
+			for (Edge<Integer, D> edge : graph.getEdgesFrom(node)) {
+				int ordinal = Objects.requireNonNull(edge.data(), "edge data").ordinal();
+				int destination = edge.destination().value();
+				masks[(node.value() * kinds + ordinal) * words + (destination >>> 6)] |=
+						1L << destination;
+			}
+		}
+		return new NeighbourMasks<>(size, kinds, masks);
+	}
+
+	private static int words(int size) {
+		return (size + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/**
+	 * @param data the edge data; not null
+	 * @return the kind mask selecting only edges with this data
+	 */
+	public int kind(D data) {
+		return 1 << data.ordinal();
+	}
+
+	/**
+	 * @return the kind mask selecting every edge
+	 */
+	public int allKinds() {
+		return kinds == Integer.SIZE ? -1 : (1 << kinds) - 1;
+	}
+
+	/**
+	 * @return one more than the largest node value; every node value is below
+	 *         this
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of words in a node set
+	 */
+	public int words() {
+		return words;
+	}
+
+	/**
+	 * @return a new empty node set
+	 */
+	public long[] newSet() {
+		return new long[words];
+	}
+
+	/**
+	 * @param from the value of the source node
+	 * @param to the value of the destination node
+	 * @param kinds kind mask of the edges to consider
+	 * @return true if there is an edge of one of the kinds from one node to
+	 *         the other
+	 */
+	public boolean isNeighbour(int from, int to, int kinds) {
+		if (from < 0 || to < 0 || from >= size || to >= size) return false;
+		int word = to >>> 6;
+		long bit = 1L << to;
+		for (int kind = 0; kind < this.kinds; kind++)
+			if ((kinds & 1 << kind) != 0 && (masks[(from * this.kinds + kind) * words + word] & bit) != 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Adds the neighbours of a node to a set
+	 *
+	 * @param node the node value, must be below {@link #size()}
+	 * @param kinds kind mask of the edges to follow
+	 * @param into the set to add to; not null
+	 */
+	public void neighbours(int node, int kinds, long[] into) {
+		for (int kind = 0; kind < this.kinds; kind++) {
+			if ((kinds & 1 << kind) == 0) continue;
+			int offset = (node * this.kinds + kind) * words;
+			for (int word = 0; word < words; word++)
+				into[word] |= masks[offset + word];
+		}
+	}
+
+	/**
+	 * Finds every node one edge away from a set of nodes
+	 *
+	 * @param from the nodes to start from; not null, not changed
+	 * @param kinds kind mask of the edges to follow
+	 * @param blocked nodes that may not be moved onto, or null for none
+	 * @param into the set to write the result to, replacing its contents; not
+	 *        null and not the same array as {@code from}
+	 */
+	public void step(long[] from, int kinds, long[] blocked, long[] into) {
+		if (from == into) throw new IllegalArgumentException("from and into must differ");
+		Arrays.fill(into, 0, words, 0);
+		for (int word = 0; word < words; word++) {
+			for (long bits = from[word]; bits != 0; bits &= bits - 1)
+				neighbours(word << 6 | Long.numberOfTrailingZeros(bits), kinds, into);
+		}
+		if (blocked != null)
+			for (int word = 0; word < words; word++) into[word] &= ~blocked[word];
+	}
+
+	/**
+	 * Finds every node that can be reached from a set of nodes by following
+	 * edges while keeping to a budget of edges per kind of edge data, such as
+	 * a player's tickets. <br>
+	 * Routes that spent the same budget carry on together, so the work grows
+	 * with the number of ways to spend the budget rather than with the number
+	 * of routes.
+	 *
+	 * @param from the nodes to start from; not null, not changed
+	 * @param budget number of edges of each kind that may be followed, indexed
+	 *        by ordinal; not null
+	 * @param wildcards number of further edges that may be followed, each of
+	 *        any kind in {@code wildcardKinds}
+	 * @param wildcardKinds kind mask of the edges a wildcard may pay for
+	 * @param steps number of edges to follow
+	 * @param blocked nodes that may not be moved onto, or passed through, or
+	 *        null for none
+	 * @param within true to include nodes reached in fewer steps, including
+	 *        the starting nodes
+	 * @param into the set to write the result to, replacing its contents; not
+	 *        null and not the same array as {@code from}
+	 */
+	public void reachable(long[] from, int[] budget, int wildcards, int wildcardKinds, int steps,
+			long[] blocked, boolean within, long[] into) {
+		if (from == into) throw new IllegalArgumentException("from and into must differ");
+		if (budget.length != kinds) throw new IllegalArgumentException(
+				"Budget needs " + kinds + " counts, got " + budget.length);
+		if (steps < 0 || wildcards < 0) throw new IllegalArgumentException(
+				"Negative steps or wildcards");
+		int[] start = Arrays.copyOf(budget, kinds + 1); // The last count is wildcards
+		start[kinds] = wildcards;
+		List<Frontier> frontier = new ArrayList<>();
+		frontier.add(new Frontier(start, Arrays.copyOf(from, words)));
+		Arrays.fill(into, 0, words, 0);
+		if (within) or(into, from);
+		long[] scratch = newSet();
+		for (int step = 0; step < steps && !frontier.isEmpty(); step++) {
+			List<Frontier> next = new ArrayList<>();
+			for (Frontier current : frontier) {
+				for (int kind = 0; kind <= kinds; kind++) {
+					if (current.budget[kind] <= 0) continue;
+					step(current.nodes, kind == kinds ? wildcardKinds : 1 << kind, blocked, scratch);
+					if (isEmpty(scratch)) continue;
+					int[] remaining = current.budget.clone();
+					remaining[kind]--;
+					merge(next, remaining, scratch);
+				}
+			}
+			frontier = next;
+			if (within) for (Frontier current : frontier) or(into, current.nodes);
+		}
+		if (!within) for (Frontier current : frontier) or(into, current.nodes);
+	}
+
+	// Routes left with the same budget share one node set
+	private void merge(List<Frontier> frontier, int[] budget, long[] nodes) {
+		for (Frontier existing : frontier) {
+			if (!Arrays.equals(existing.budget, budget)) continue;
+			or(existing.nodes, nodes);
+			return;
+		}
+		frontier.add(new Frontier(budget, Arrays.copyOf(nodes, words)));
+	}
+
+	private void or(long[] into, long[] nodes) {
+		for (int word = 0; word < words; word++) into[word] |= nodes[word];
+	}
+
+	private boolean isEmpty(long[] nodes) {
+		for (int word = 0; word < words; word++) if (nodes[word] != 0) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "NeighbourMasks{" + "size=" + size + ", kinds=" + kinds + '}';
+	}
+
+	private static final class Frontier {
+
+		final int[] budget;
+		final long[] nodes;
+
+		Frontier(int[] budget, long[] nodes) {
+			this.budget = budget;
+			this.nodes = nodes;
+		}
+	}
+
+}
@@ -21,6 +21,12 @@ public final class UndirectedGraph<V, D> extends AbstractGraph<V, D> implements
 	private final Map<Node<V>, List<Edge<V, D>>> sourceEdges = new HashMap<>();
 	private final Map<Node<V>, List<Edge<V, D>>> destinationEdges = new HashMap<>();
 	private final List<Edge<V, D>> edges = new ArrayList<>();
+	// read only views, made once so the getters do not allocate
+	private final List<Node<V>> nodeList = new ArrayList<>();
+	private final List<Node<V>> nodesView = Collections.unmodifiableList(nodeList);
+	private final List<Edge<V, D>> edgesView = Collections.unmodifiableList(edges);
+	private final Map<Node<V>, List<Edge<V, D>>> sourceViews = new HashMap<>();
+	private final Map<Node<V>, List<Edge<V, D>>> destinationViews = new HashMap<>();
 
 	/**
 	 * Creates a new undirected graph
@@ -41,8 +47,13 @@ public final class UndirectedGraph<V, D> extends AbstractGraph<V, D> implements
 		if (valueNodeMap.containsKey(node.value()))
 			throw new IllegalArgumentException(node + " is already in the graph");
 		valueNodeMap.put(node.value(), node);
-		sourceEdges.put(node, new ArrayList<>());
-		destinationEdges.put(node, new ArrayList<>());
+		nodeList.add(node);
+		List<Edge<V, D>> from = new ArrayList<>();
+		List<Edge<V, D>> to = new ArrayList<>();
+		sourceEdges.put(node, from);
+		destinationEdges.put(node, to);
+		sourceViews.put(node, Collections.unmodifiableList(from));
+		destinationViews.put(node, Collections.unmodifiableList(to));
 	}
 
 	/**
@@ -82,22 +93,22 @@ public final class UndirectedGraph<V, D> extends AbstractGraph<V, D> implements
 
 	@Override
 	public List<Node<V>> getNodes() {
-		return Collections.unmodifiableList(new ArrayList<>(valueNodeMap.values()));
+		return nodesView;
 	}
 
 	@Override
 	public Collection<Edge<V, D>> getEdges() {
-		return Collections.unmodifiableList(edges);
+		return edgesView;
 	}
 
 	@Override
 	public Collection<Edge<V, D>> getEdgesFrom(Node<V> source) {
-		return Collections.unmodifiableList(sourceEdges.get(source));
+		return sourceViews.getOrDefault(source, Collections.emptyList());
 	}
 
 	@Override
 	public Collection<Edge<V, D>> getEdgesTo(Node<V> destination) {
-		return Collections.unmodifiableList(destinationEdges.get(destination));
+		return destinationViews.getOrDefault(destination, Collections.emptyList());
 	}
 
 	@Override
@@ -3,6 +3,7 @@ package uk.ac.bris.cs.scotlandyard.ai;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +18,10 @@ import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableSet;
 
+import javafx.geometry.Point2D;
+import javafx.scene.image.Image;
 import javafx.scene.layout.Pane;
+import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.ai.AI;
 import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
@@ -26,6 +30,8 @@ import uk.ac.bris.cs.scotlandyard.model.Move;
 import uk.ac.bris.cs.scotlandyard.model.Player;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
 
 /**
  * <b> Not a public API, do not use!</b> <br>
@@ -51,9 +57,14 @@ public class AIPool<G> {
 	}
 
 	public void initialise(ResourceManager manager, ScotlandYardGame game) {
+		initialise(manager, null, game);
+	}
+
+	public void initialise(ResourceManager manager, Duration timeout, ScotlandYardGame game) {
+		ResourceProvider provider = new TimedResourceProvider(manager, timeout);
 		groups.values().forEach(group -> {
 			try {
-				group.initialise(manager, game);
+				group.initialise(provider, game);
 			} catch (Exception e) {
 				e.printStackTrace();
 				exceptionHandler.accept(e);
@@ -84,6 +95,14 @@ public class AIPool<G> {
 		surface.onDestroy();
 	}
 
+	/**
+	 * @return the executor AI moves are made on, AIs may submit their own
+	 *         work to it
+	 */
+	static ExecutorService executor() {
+		return ThreadedPlayer.service;
+	}
+
 	public interface VisualiserSurface {
 
 		Pane onCreate(AI ai);
@@ -101,14 +120,14 @@ public class AIPool<G> {
 			ais.put(colour, ai);
 		}
 
-		void initialise(ResourceManager manager, ScotlandYardGame game) throws Exception {
+		void initialise(ResourceProvider provider, ScotlandYardGame game) throws Exception {
 			factories = ais.values().stream()
 					.distinct()
 					.collect(toMap(Function.identity(), AI::instantiate));
 			factories.forEach((ai, factory) -> {
 				factory.createSpectators(game).forEach(game::registerSpectator);
 				Pane pane = surface.onCreate(ai);
-				factory.ready(() -> pane, manager);
+				factory.ready(() -> pane, provider);
 			});
 		}
 
@@ -126,6 +145,42 @@ public class AIPool<G> {
 
 	}
 
+	static class TimedResourceProvider implements ResourceProvider {
+
+		private final ResourceProvider provider;
+		private final Optional<Duration> timeout;
+
+		private TimedResourceProvider(ResourceProvider provider, Duration timeout) {
+			this.provider = provider;
+			this.timeout = Optional.ofNullable(timeout);
+		}
+
+		@Override
+		public Image getMap() {
+			return provider.getMap();
+		}
+
+		@Override
+		public Image getTicket(Ticket ticket) {
+			return provider.getTicket(ticket);
+		}
+
+		@Override
+		public Graph<Integer, Transport> getGraph() {
+			return provider.getGraph();
+		}
+
+		@Override
+		public Point2D coordinateAtNode(int node) {
+			return provider.coordinateAtNode(node);
+		}
+
+		@Override
+		public Optional<Duration> getTimeout() {
+			return timeout;
+		}
+	}
+
 	static class ThreadedPlayer implements Player {
 
 		final static ExecutorService service = Executors.newWorkStealingPool();
@@ -0,0 +1,17 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+/**
+ * {@link MonteCarloAI} whose detectives search several of Mr.X's possible
+ * locations in parallel and vote with the visit counts of their trees. Mr.X
+ * plays as in {@link MonteCarloAI}.
+ */
+@ManagedAI("Monte Carlo (Determinized)")
+public class DeterminizedMonteCarloAI extends MonteCarloAI {
+
+	private static final int SAMPLES = 8;
+
+	public DeterminizedMonteCarloAI() {
+		super(SAMPLES);
+	}
+
+}
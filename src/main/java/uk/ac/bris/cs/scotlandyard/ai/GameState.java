@@ -0,0 +1,598 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static uk.ac.bris.cs.scotlandyard.model.PackedMove.destination;
+import static uk.ac.bris.cs.scotlandyard.model.PackedMove.isDouble;
+import static uk.ac.bris.cs.scotlandyard.model.PackedMove.isPass;
+import static uk.ac.bris.cs.scotlandyard.model.PackedMove.secondDestination;
+import static uk.ac.bris.cs.scotlandyard.model.PackedMove.secondTicket;
+import static uk.ac.bris.cs.scotlandyard.model.PackedMove.ticket;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * A compact, primitive representation of a Scotland Yard game for searching.
+ * <br>
+ * Locations are kept in an int array, tickets in a single packed int matrix
+ * (one row of {@link Ticket} ordinals per player) and moves are
+ * {@link PackedMove packed longs}. Moves are applied with {@link #play(long)}
+ * and reverted with {@link #undo()}; neither allocates once the undo stack has
+ * grown to the search depth. <br>
+ * Move generation follows the same rules as
+ * {@link uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel}. <br>
+ * Player 0 is always Mr.X, the rest are detectives in turn order. Instances are
+ * not thread safe, use {@link #copy()} to give each thread its own state. <br>
+ * Once given {@link ZobristKeys} with {@link #hashWith(ZobristKeys)}, a state
+ * keeps its {@link #hash()} up to date as moves are played and undone.
+ */
+public final class GameState {
+
+	/**
+	 * Index of Mr.X
+	 */
+	public static final int MRX = 0;
+
+	private static final int TICKETS = Ticket.values().length;
+	private static final int DOUBLE = Ticket.Double.ordinal();
+	private static final int SECRET = Ticket.Secret.ordinal();
+	private static final int[] TRANSPORT_TICKETS = new int[Transport.values().length];
+
+	static {
+		for (Transport transport : Transport.values())
+			TRANSPORT_TICKETS[transport.ordinal()] = Ticket.fromTransport(transport).ordinal();
+	}
+
+	private final Graph<Integer, Transport> graph;
+	private final Adjacency adjacency;
+	private final boolean[] rounds;
+	private final Colour[] colours;
+	private final int[] locations;
+	private final int[] tickets;
+	private int round;
+	private int current;
+	private ZobristKeys keys;
+	private long hash;
+
+	// undo stack, one entry per played move
+	private long[] playedMoves = new long[16];
+	private long[] playedHash = new long[16];
+	private int[] playedFrom = new int[16];
+	private int[] playedRound = new int[16];
+	private int played;
+
+	private GameState(Graph<Integer, Transport> graph, Adjacency adjacency, boolean[] rounds,
+			Colour[] colours, int[] locations, int[] tickets, int round, int current) {
+		this.graph = graph;
+		this.adjacency = adjacency;
+		this.rounds = rounds;
+		this.colours = colours;
+		this.locations = locations;
+		this.tickets = tickets;
+		this.round = round;
+		this.current = current;
+	}
+
+	/**
+	 * Creates a state from the given view
+	 *
+	 * @param view the view to copy players, tickets and rounds from; not null
+	 * @param mrXLocation the actual location of Mr.X, as the view only exposes
+	 *        the last revealed one
+	 * @return a new state; never null
+	 */
+	public static GameState of(ScotlandYardView view, int mrXLocation) {
+		Objects.requireNonNull(view);
+		List<Colour> players = view.getPlayers();
+		Colour[] colours = players.toArray(new Colour[0]);
+		if (colours.length == 0 || colours[MRX] != Colour.Black)
+			throw new IllegalArgumentException("Mr.X must be the first player");
+		int[] locations = new int[colours.length];
+		int[] tickets = new int[colours.length * TICKETS];
+		for (int player = 0; player < colours.length; player++) {
+			locations[player] = player == MRX ? mrXLocation
+					: view.getPlayerLocation(colours[player]);
+			for (Ticket ticket : Ticket.values())
+				tickets[player * TICKETS + ticket.ordinal()] = view
+						.getPlayerTickets(colours[player], ticket);
+		}
+		List<Boolean> viewRounds = view.getRounds();
+		boolean[] rounds = new boolean[viewRounds.size()];
+		for (int i = 0; i < rounds.length; i++)
+			rounds[i] = viewRounds.get(i);
+		Graph<Integer, Transport> graph = view.getGraph();
+		return new GameState(graph, new Adjacency(graph), rounds, colours, locations, tickets,
+				view.getCurrentRound(), Math.max(0, players.indexOf(view.getCurrentPlayer())));
+	}
+
+	/**
+	 * Creates an independent copy of this state with an empty undo stack
+	 *
+	 * @return the copy; never null
+	 */
+	public GameState copy() {
+		GameState copy = new GameState(graph, adjacency, rounds, colours, locations.clone(),
+				tickets.clone(), round, current);
+		copy.keys = keys;
+		copy.hash = hash;
+		return copy;
+	}
+
+	/**
+	 * Starts hashing this state with the given keys
+	 *
+	 * @param keys the keys, must {@link ZobristKeys#fits(GameState) fit} this
+	 *        state; not null
+	 * @return this state
+	 */
+	public GameState hashWith(ZobristKeys keys) {
+		if (!Objects.requireNonNull(keys).fits(this))
+			throw new IllegalArgumentException("Keys do not fit " + this);
+		this.keys = keys;
+		long hash = keys.round(round) ^ keys.player(current);
+		for (int player = 0; player < colours.length; player++) {
+			hash ^= keys.location(player, locations[player]);
+			for (int ticket = 0; ticket < TICKETS; ticket++)
+				hash ^= keys.tickets(player, ticket, tickets[player * TICKETS + ticket]);
+		}
+		this.hash = hash;
+		return this;
+	}
+
+	/**
+	 * @return true if this state keeps a {@link #hash()}
+	 */
+	public boolean isHashed() {
+		return keys != null;
+	}
+
+	/**
+	 * @return the Zobrist hash of this state
+	 * @throws IllegalStateException if the state is not being hashed
+	 */
+	public long hash() {
+		if (keys == null) throw new IllegalStateException("No keys, see hashWith");
+		return hash;
+	}
+
+	/**
+	 * @return the graph this state is played on; never null
+	 */
+	public Graph<Integer, Transport> graph() {
+		return graph;
+	}
+
+	/**
+	 * @return number of players, including Mr.X
+	 */
+	public int players() {
+		return colours.length;
+	}
+
+	/**
+	 * @return one more than the largest location in the graph
+	 */
+	public int nodes() {
+		return adjacency.neighbours.length;
+	}
+
+	/**
+	 * @param player the player index
+	 * @return the colour of the player
+	 */
+	public Colour colour(int player) {
+		return colours[player];
+	}
+
+	/**
+	 * @param player the player index
+	 * @return the location of the player
+	 */
+	public int location(int player) {
+		return locations[player];
+	}
+
+	/**
+	 * @param player the player index
+	 * @param ticket the ticket; not null
+	 * @return how many of the ticket the player holds
+	 */
+	public int tickets(int player, Ticket ticket) {
+		return tickets[player * TICKETS + ticket.ordinal()];
+	}
+
+	/**
+	 * @return the index of the player to move
+	 */
+	public int currentPlayer() {
+		return current;
+	}
+
+	/**
+	 * @return the current round, same meaning as
+	 *         {@link ScotlandYardView#getCurrentRound()}
+	 */
+	public int round() {
+		return round;
+	}
+
+	/**
+	 * @return total number of rounds in the game
+	 */
+	public int totalRounds() {
+		return rounds.length;
+	}
+
+	/**
+	 * @param round a zero based round index
+	 * @return true if Mr.X's location is revealed by the move made in the given
+	 *         round
+	 */
+	public boolean isReveal(int round) {
+		return round >= 0 && round < rounds.length && rounds[round];
+	}
+
+	/**
+	 * @return the size a move buffer must have to hold the moves of any player
+	 *         in this state
+	 */
+	public int maxMoves() {
+		return adjacency.maxMoves;
+	}
+
+	/**
+	 * @return number of moves played since this state was created or copied
+	 */
+	public int depth() {
+		return played;
+	}
+
+	/**
+	 * Plays the given move for the current player
+	 *
+	 * @param move the move, must be valid for the current player
+	 */
+	public void play(Move move) {
+		play(PackedMove.pack(move));
+	}
+
+	/**
+	 * Plays the given packed move for the current player; moves are not
+	 * validated
+	 *
+	 * @param move the packed move, must be valid for the current player
+	 */
+	public void play(long move) {
+		if (played == playedMoves.length) grow();
+		playedMoves[played] = move;
+		playedHash[played] = hash;
+		playedFrom[played] = locations[current];
+		playedRound[played] = round;
+		played++;
+		int mover = current;
+		if (keys != null) hash ^= changedKeys(mover, move);
+		if (!isPass(move)) {
+			int row = current * TICKETS;
+			tickets[row + ticket(move)]--;
+			if (current == MRX) {
+				round++;
+				if (isDouble(move)) {
+					tickets[row + secondTicket(move)]--;
+					tickets[row + DOUBLE]--;
+					locations[MRX] = secondDestination(move);
+					round++;
+				} else locations[MRX] = destination(move);
+			} else {
+				tickets[ticket(move)]++;
+				locations[current] = destination(move);
+			}
+		}
+		current = (current + 1) % colours.length;
+		if (keys != null) hash ^= changedKeys(mover, move);
+	}
+
+	// XOR of the keys for everything the move can change, taken before and
+	// after playing it to swap the old keys for the new ones
+	private long changedKeys(int mover, long move) {
+		long changed = keys.round(round) ^ keys.player(current);
+		if (isPass(move)) return changed;
+		changed ^= keys.location(mover, locations[mover]);
+		changed ^= ticketKey(mover, ticket(move));
+		if (mover != MRX) return changed ^ ticketKey(MRX, ticket(move));
+		if (!isDouble(move)) return changed;
+		if (secondTicket(move) != ticket(move)) changed ^= ticketKey(MRX, secondTicket(move));
+		return changed ^ ticketKey(MRX, DOUBLE);
+	}
+
+	private long ticketKey(int player, int ticket) {
+		return keys.tickets(player, ticket, tickets[player * TICKETS + ticket]);
+	}
+
+	/**
+	 * Reverts the last move played
+	 */
+	public void undo() {
+		if (played == 0) throw new IllegalStateException("Nothing to undo");
+		played--;
+		long move = playedMoves[played];
+		current = (current + colours.length - 1) % colours.length;
+		round = playedRound[played];
+		hash = playedHash[played];
+		if (!isPass(move)) {
+			int row = current * TICKETS;
+			tickets[row + ticket(move)]++;
+			if (current == MRX) {
+				if (isDouble(move)) {
+					tickets[row + secondTicket(move)]++;
+					tickets[row + DOUBLE]++;
+				}
+			} else tickets[ticket(move)]--;
+			locations[current] = playedFrom[played];
+		}
+	}
+
+	private void grow() {
+		int size = playedMoves.length * 2;
+		playedMoves = Arrays.copyOf(playedMoves, size);
+		playedHash = Arrays.copyOf(playedHash, size);
+		playedFrom = Arrays.copyOf(playedFrom, size);
+		playedRound = Arrays.copyOf(playedRound, size);
+	}
+
+	private boolean occupied(int location) {
+		for (int player = 1; player < locations.length; player++)
+			if (locations[player] == location) return true;
+		return false;
+	}
+
+	/**
+	 * Writes the single ticket moves the given player could make from a
+	 * location into the buffer
+	 *
+	 * @param player the player index
+	 * @param from the location to move from
+	 * @param buffer the buffer to write packed moves to
+	 * @param offset where to start writing in the buffer
+	 * @return number of moves written
+	 */
+	public int singleMoves(int player, int from, long[] buffer, int offset) {
+		if (from < 0 || from >= adjacency.neighbours.length) return 0;
+		int[] neighbours = adjacency.neighbours[from];
+		int[] masks = adjacency.tickets[from];
+		if (neighbours == null) return 0;
+		int row = player * TICKETS;
+		int count = offset;
+		for (int i = 0; i < neighbours.length; i++) {
+			int destination = neighbours[i];
+			if (occupied(destination)) continue;
+			int usable = masks[i] & held(row);
+			if (usable == 0) continue;
+			for (int ticket = 0; usable != 0; ticket++, usable >>>= 1) {
+				if ((usable & 1) != 0) buffer[count++] = PackedMove.ticketMove(ticket, destination);
+			}
+			// Mr.X may swap any ticket he could use for a secret one
+			if (player == MRX && tickets[row + SECRET] > 0 && (masks[i] & (1 << SECRET)) == 0)
+				buffer[count++] = PackedMove.ticketMove(SECRET, destination);
+		}
+		return count - offset;
+	}
+
+	// Bit mask of the ticket ordinals the player with the given row holds
+	private int held(int row) {
+		int mask = 0;
+		for (int ticket = 0; ticket < TICKETS; ticket++)
+			if (tickets[row + ticket] > 0) mask |= 1 << ticket;
+		return mask;
+	}
+
+	/**
+	 * Writes all valid moves of the current player into the buffer; detectives
+	 * without any moves get a single pass move
+	 *
+	 * @param buffer the buffer to write packed moves to, must be at least
+	 *        {@link #maxMoves()} long
+	 * @return number of moves written
+	 */
+	public int moves(long[] buffer) {
+		if (current != MRX) {
+			int count = singleMoves(current, locations[current], buffer, 0);
+			if (count > 0) return count;
+			buffer[0] = PackedMove.PASS;
+			return 1;
+		}
+		int singles = singleMoves(MRX, locations[MRX], buffer, 0);
+		return singles + doubleMoves(buffer, singles);
+	}
+
+	/**
+	 * Appends Mr.X's double moves to the buffer, the first {@code singles}
+	 * entries of the buffer must be his single moves
+	 *
+	 * @param buffer the buffer holding the single moves
+	 * @param singles number of single moves at the start of the buffer
+	 * @return number of double moves written after the single moves
+	 */
+	public int doubleMoves(long[] buffer, int singles) {
+		if (tickets[DOUBLE] == 0 || round >= rounds.length - 1) return 0;
+		int count = singles;
+		for (int i = 0; i < singles; i++) {
+			long first = buffer[i];
+			int seconds = singleMoves(MRX, destination(first), buffer, count);
+			int kept = count;
+			for (int j = count; j < count + seconds; j++) {
+				long second = buffer[j];
+				int needed = ticket(first) == ticket(second) ? 2 : 1;
+				if (tickets[ticket(first)] >= needed && tickets[ticket(second)] >= needed)
+					buffer[kept++] = PackedMove.doubleMove(first, second);
+			}
+			count = kept;
+		}
+		return count - singles;
+	}
+
+	/**
+	 * Counts the moves Mr.X could make, including double moves, without
+	 * generating them; a cheaper measure of his freedom than
+	 * {@link #doubleMoves(long[], int)}
+	 *
+	 * @return number of Mr.X's single plus double moves
+	 */
+	public int mrXMoveCount() {
+		int from = locations[MRX];
+		int singles = countSingleMoves(MRX, from);
+		if (tickets[DOUBLE] == 0 || round >= rounds.length - 1 || singles == 0) return singles;
+		int[] neighbours = adjacency.neighbours[from];
+		int[] masks = adjacency.tickets[from];
+		int held = held(0);
+		int doubles = 0;
+		for (int i = 0; i < neighbours.length; i++) {
+			if (occupied(neighbours[i])) continue;
+			int usable = masks[i] & held;
+			if (usable != 0 && tickets[SECRET] > 0) usable |= 1 << SECRET;
+			for (int ticket = 0; usable != 0; ticket++, usable >>>= 1) {
+				if ((usable & 1) == 0) continue;
+				tickets[ticket]--; // the second move can not reuse the first ticket
+				doubles += countSingleMoves(MRX, neighbours[i]);
+				tickets[ticket]++;
+			}
+		}
+		return singles + doubles;
+	}
+
+	private int countSingleMoves(int player, int from) {
+		if (from < 0 || from >= adjacency.neighbours.length) return 0;
+		int[] neighbours = adjacency.neighbours[from];
+		int[] masks = adjacency.tickets[from];
+		if (neighbours == null) return 0;
+		int held = held(player * TICKETS);
+		boolean secret = player == MRX && tickets[player * TICKETS + SECRET] > 0;
+		int count = 0;
+		for (int i = 0; i < neighbours.length; i++) {
+			int usable = masks[i] & held;
+			if (usable == 0 || occupied(neighbours[i])) continue;
+			count += Integer.bitCount(usable);
+			if (secret && (masks[i] & (1 << SECRET)) == 0) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks whether the player has any single move from their location
+	 *
+	 * @param player the player index
+	 * @return true if the player can move
+	 */
+	public boolean canMove(int player) {
+		int from = locations[player];
+		if (from < 0 || from >= adjacency.neighbours.length) return false;
+		int[] neighbours = adjacency.neighbours[from];
+		int[] masks = adjacency.tickets[from];
+		if (neighbours == null) return false;
+		int held = held(player * TICKETS);
+		for (int i = 0; i < neighbours.length; i++) {
+			if ((masks[i] & held) != 0 && !occupied(neighbours[i])) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if a detective is on Mr.X's location
+	 */
+	public boolean isMrXCaptured() {
+		return occupied(locations[MRX]);
+	}
+
+	private boolean areDetectivesStuck() {
+		for (int player = 1; player < locations.length; player++)
+			if (canMove(player)) return false;
+		return true;
+	}
+
+	/**
+	 * As in the model, only a capture ends the game partway through a
+	 * rotation; the last round, stuck detectives and a stuck Mr.X are checked
+	 * once every detective has moved and it is Mr.X's turn again.
+	 *
+	 * @return true if the game has ended in this state
+	 */
+	public boolean isGameOver() {
+		if (isMrXCaptured()) return true;
+		if (current != MRX) return false;
+		return round == rounds.length || areDetectivesStuck() || !canMove(MRX);
+	}
+
+	/**
+	 * @return true if Mr.X has won, only meaningful when
+	 *         {@link #isGameOver()} is true
+	 */
+	public boolean isMrXWinner() {
+		return !isMrXCaptured() && canMove(MRX);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("GameState{");
+		sb.append("round=").append(round);
+		sb.append(", current=").append(colours[current]);
+		for (int player = 0; player < colours.length; player++) {
+			sb.append(", ").append(colours[player]).append('@').append(locations[player])
+					.append(Arrays.toString(
+							Arrays.copyOfRange(tickets, player * TICKETS, (player + 1) * TICKETS)));
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * The graph flattened to int arrays: the distinct neighbours of every node
+	 * and, for each neighbour, a bit mask of the ticket ordinals that can be
+	 * used to get there
+	 */
+	private static final class Adjacency {
+
+		final int[][] neighbours;
+		final int[][] tickets;
+		final int maxMoves;
+
+		Adjacency(Graph<Integer, Transport> graph) {
+			int size = 0;
+			for (Node<Integer> node : graph.getNodes())
+				size = Math.max(size, node.value() + 1);
+			neighbours = new int[size][];
+			tickets = new int[size][];
+			int singles = 0;
+			for (Node<Integer> node : graph.getNodes()) {
+				int[] destinations = new int[graph.getEdgesFrom(node).size()];
+				int[] masks = new int[destinations.length];
+				int count = 0;
+				for (Edge<Integer, Transport> edge : graph.getEdgesFrom(node)) {
+					int destination = edge.destination().value();
+					int i = 0;
+					while (i < count && destinations[i] != destination) i++;
+					if (i == count) destinations[count++] = destination;
+					masks[i] |= 1 << TRANSPORT_TICKETS[edge.data().ordinal()];
+				}
+				neighbours[node.value()] = Arrays.copyOf(destinations, count);
+				tickets[node.value()] = Arrays.copyOf(masks, count);
+				// every usable ticket plus a secret alternative for each neighbour
+				int moves = 0;
+				for (int i = 0; i < count; i++)
+					moves += Integer.bitCount(masks[i]) + 1;
+				singles = Math.max(singles, moves);
+			}
+			maxMoves = Math.max(1, singles + singles * singles);
+		}
+
+	}
+
+}
@@ -0,0 +1,151 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+/**
+ * Lazily enumerates the combinations of one move per detective, skipping
+ * combinations where two detectives would end up on the same location. A
+ * detective whose every move lands on a detective before it passes instead,
+ * as the model gives a pass to a detective with no valid move, so there is
+ * always at least one combination. <br>
+ * Each detective's moves are filled into {@link #moves(int)} in the order they
+ * should be tried, then {@link #next()} steps through the combinations like an
+ * odometer with the last detective turning fastest. A collision between the
+ * first few detectives skips every combination sharing them without visiting
+ * it. Stopping early, e.g. on an alpha-beta cut-off, costs nothing and no
+ * combination is ever materialised, so the enumeration does not allocate. <br>
+ * Instances are reused: call {@link #reset()} before filling in new moves.
+ */
+final class JointMoves {
+
+	private final int detectives;
+	private final long[][] moves;
+	private final int[] counts;
+	private final int[] index; // counts[d] when detective d passes because every move collides
+	private final boolean[] moved; // Whether detective d has had a move without collision
+	private boolean started;
+
+	/**
+	 * @param detectives number of detectives
+	 * @param maxMoves the most moves a detective can have
+	 */
+	JointMoves(int detectives, int maxMoves) {
+		this.detectives = detectives;
+		this.moves = new long[detectives][maxMoves];
+		this.counts = new int[detectives];
+		this.index = new int[detectives];
+		this.moved = new boolean[detectives];
+	}
+
+	/**
+	 * Forgets the current moves and restarts the enumeration
+	 */
+	void reset() {
+		started = false;
+	}
+
+	/**
+	 * @param detective zero based detective index
+	 * @return the buffer to write the detective's packed moves into
+	 */
+	long[] moves(int detective) {
+		return moves[detective];
+	}
+
+	/**
+	 * @param detective zero based detective index
+	 * @param count number of moves written to {@link #moves(int)}, at least
+	 *        one
+	 */
+	void count(int detective, int count) {
+		counts[detective] = count;
+	}
+
+	/**
+	 * Advances to the next combination without collisions
+	 *
+	 * @return false if there are no more combinations
+	 */
+	boolean next() {
+		int level;
+		if (started) level = detectives - 1;
+		else {
+			started = true;
+			level = 0;
+			enter(0);
+		}
+		while (level >= 0) {
+			if (++index[level] >= counts[level]) {
+				if (index[level] > counts[level] || moved[level]) {
+					level--;
+					continue;
+				}
+			} else if (collides(level)) continue;
+			else moved[level] = true;
+			if (level == detectives - 1) return true;
+			enter(++level);
+		}
+		return false;
+	}
+
+	private void enter(int level) {
+		index[level] = -1;
+		moved[level] = false;
+	}
+
+	// Whether the detective's current move lands on a detective before it
+	private boolean collides(int level) {
+		long move = move(level);
+		if (PackedMove.isPass(move)) return false;
+		int destination = PackedMove.destination(move);
+		for (int other = 0; other < level; other++) {
+			long previous = move(other);
+			if (!PackedMove.isPass(previous) && PackedMove.destination(previous) == destination)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param detective zero based detective index
+	 * @return the detective's move in the current combination
+	 */
+	long move(int detective) {
+		int at = index[detective];
+		return at == counts[detective] ? PackedMove.PASS : moves[detective][at];
+	}
+
+	/**
+	 * @param location Mr.X's location
+	 * @return true if a detective moves onto the location in the current
+	 *         combination
+	 */
+	boolean captures(int location) {
+		for (int detective = 0; detective < detectives; detective++) {
+			long move = move(detective);
+			if (!PackedMove.isPass(move) && PackedMove.destination(move) == location) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Plays the current combination, one detective after another
+	 *
+	 * @param state the state, the first detective must be the current player
+	 */
+	void play(GameState state) {
+		for (int detective = 0; detective < detectives; detective++)
+			state.play(move(detective));
+	}
+
+	/**
+	 * Reverts {@link #play(GameState)}
+	 *
+	 * @param state the state the combination was played on
+	 */
+	void undo(GameState state) {
+		for (int detective = 0; detective < detectives; detective++)
+			state.undo();
+	}
+
+}
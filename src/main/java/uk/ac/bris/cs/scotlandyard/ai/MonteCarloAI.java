@@ -0,0 +1,200 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * An AI for either side that picks moves with Monte Carlo tree search, see
+ * {@link MonteCarloTree}. <br>
+ * Each move searches for three quarters of the game's timeout, or a fixed
+ * number of iterations when there is no timeout. The tree is kept between
+ * moves, so positions already explored on earlier turns start with their
+ * statistics. <br>
+ * Detectives do not know where Mr.X is: they search from one of his possible
+ * locations, as tracked by a {@link MrXTracker}, preferring the one the kept
+ * tree has explored most. Given more than one sample, detectives instead
+ * search a separate tree for each of several possible locations at once on
+ * the {@link AIPool} executor, and play the move with the most visits summed
+ * over all of them.
+ */
+@ManagedAI("Monte Carlo")
+public class MonteCarloAI implements PlayerFactory {
+
+	private static final int ITERATIONS = 20000; // Per move when the game has no timeout
+
+	private final int samples; // Mr.X locations detectives search at once
+	private final SplittableRandom random = new SplittableRandom();
+	private volatile Duration timeout;
+	private volatile Tablebase tablebase;
+	private MrXTracker tracker;
+	private DistanceTable distances;
+	private MonteCarloTree mrXTree;
+	private MonteCarloTree[] detectiveTrees;
+
+	public MonteCarloAI() {
+		this(1);
+	}
+
+	/**
+	 * @param samples number of possible Mr.X locations detectives search, each
+	 *        in its own tree
+	 */
+	MonteCarloAI(int samples) {
+		if (samples < 1) throw new IllegalArgumentException("Need at least one sample");
+		this.samples = samples;
+	}
+
+	@Override
+	public List<Spectator> createSpectators(ScotlandYardView view) {
+		tracker = new MrXTracker(view);
+		return Collections.singletonList(tracker);
+	}
+
+	@Override
+	public void ready(Visualiser visualiser, ResourceProvider provider) {
+		timeout = provider.getTimeout().orElse(null);
+		tablebase = Tablebase.fromProperty(provider.getGraph());
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return (ScotlandYardView view, int location, Set<Move> moves, Consumer<Move> callback) -> {
+			long started = System.nanoTime();
+			callback.accept(chooseMove(view, colour, location, moves, started));
+		};
+	}
+
+	// Moves of one side are never searched at the same time, the game waits for each
+	private synchronized Move chooseMove(ScotlandYardView view, Colour colour, int location,
+			Set<Move> moves, long started) {
+		Duration timeout = this.timeout;
+		long deadline = started + (timeout == null ? TimeUnit.DAYS.toNanos(1)
+				: timeout.toNanos() / 4 * 3);
+		int iterations = timeout == null ? ITERATIONS : Integer.MAX_VALUE;
+		long move;
+		if (colour.isMrX()) {
+			GameState state = GameState.of(view, location);
+			move = mrXTree(state).search(state, null, deadline, iterations);
+		} else {
+			move = searchDetectives(view, deadline, iterations);
+		}
+		Move chosen = PackedMove.unpack(colour, move);
+		return moves.contains(chosen) ? chosen : moves.iterator().next();
+	}
+
+	private MonteCarloTree mrXTree(GameState state) {
+		if (distances == null)
+			distances = DistanceTable.of(state.graph(), transport -> transport != Transport.Boat);
+		if (mrXTree == null) mrXTree = new MonteCarloTree(distances, tablebase, random.nextLong());
+		return mrXTree;
+	}
+
+	// Searches one tree per sampled Mr.X location, in parallel when there are several
+	private long searchDetectives(ScotlandYardView view, long deadline, int iterations) {
+		int[] locations = guessMrX(view);
+		List<GameState> states = new ArrayList<>();
+		for (int location : locations)
+			states.add(GameState.of(view, location)); // Mr.X's tickets and the reveal rounds come from the view
+		if (distances == null) distances = DistanceTable.of(states.get(0).graph(),
+				transport -> transport != Transport.Boat);
+		if (detectiveTrees == null) {
+			detectiveTrees = new MonteCarloTree[samples];
+			for (int i = 0; i < samples; i++)
+				detectiveTrees[i] = new MonteCarloTree(distances, tablebase, random.nextLong());
+		}
+		if (samples == 1) {
+			IntPredicate possible = tracker == null ? null : tracker::isPossible;
+			return detectiveTrees[0].search(states.get(0), possible, deadline, iterations);
+		}
+
+		// each tree keeps to its sampled location, so subtrees are only reused
+		// when the same location is drawn again
+		int perTree = Math.max(1, iterations / samples);
+		List<Callable<Long>> searches = new ArrayList<>();
+		for (int i = 0; i < samples; i++) {
+			MonteCarloTree tree = detectiveTrees[i];
+			GameState state = states.get(i);
+			searches.add(() -> tree.search(state, null, deadline, perTree));
+		}
+		try {
+			for (Future<Long> search : AIPool.executor().invokeAll(searches))
+				search.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		}
+		return mostVisited(states.get(0).maxMoves());
+	}
+
+	// The move with the most visits over all detective trees, their root moves are the same
+	private long mostVisited(int maxMoves) {
+		long[] moves = new long[maxMoves];
+		int[] visits = new int[maxMoves];
+		long[] treeMoves = new long[maxMoves];
+		int[] treeVisits = new int[maxMoves];
+		int count = 0;
+		for (MonteCarloTree tree : detectiveTrees) {
+			int n = tree.rootMoves(treeMoves, treeVisits);
+			for (int i = 0; i < n; i++) {
+				int j = 0;
+				while (j < count && moves[j] != treeMoves[i]) j++;
+				if (j == count) moves[count++] = treeMoves[i];
+				visits[j] += treeVisits[i];
+			}
+		}
+		long best = PackedMove.PASS;
+		int bestVisits = -1;
+		for (int i = 0; i < count; i++) {
+			if (visits[i] > bestVisits) {
+				bestVisits = visits[i];
+				best = moves[i];
+			}
+		}
+		return best;
+	}
+
+	// Distinct random locations Mr.X could be at, repeating some if there are too few; the
+	// last one revealed without a tracker
+	private int[] guessMrX(ScotlandYardView view) {
+		BitSet possible = tracker == null ? new BitSet() : tracker.possibleLocations();
+		int[] candidates = possible.stream().toArray();
+		int[] locations = new int[samples];
+		if (candidates.length == 0) {
+			Arrays.fill(locations, view.getPlayerLocation(Colour.Black));
+			return locations;
+		}
+		for (int i = 0; i < samples; i++) {
+			int left = candidates.length - i % candidates.length; // Partial shuffle, restarted on repeats
+			int pick = random.nextInt(left);
+			int swap = candidates[pick];
+			candidates[pick] = candidates[left - 1];
+			candidates[left - 1] = swap;
+			locations[i] = swap;
+		}
+		return locations;
+	}
+
+}
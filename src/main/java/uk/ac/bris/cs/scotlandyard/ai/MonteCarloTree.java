@@ -0,0 +1,323 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static uk.ac.bris.cs.scotlandyard.ai.GameState.MRX;
+
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+/**
+ * Monte Carlo tree search over {@link GameState}s with UCT selection. <br>
+ * Every player moves in their own ply, in turn order. Each iteration walks
+ * down the tree picking the child with the best upper confidence bound,
+ * expands one new node, plays the game out to the end with a cheap rollout
+ * policy and credits the result to every node on the way back up. A node's
+ * wins are counted for the side of the player whose move led to it. <br>
+ * Rollouts play single moves only: with some probability each player makes
+ * the greedy move by {@link DistanceTable} distance (detectives close in on
+ * Mr.X, Mr.X keeps away from the nearest detective), otherwise a random one.
+ * Given a {@link Tablebase}, a rollout stops as a Mr.X win as soon as it
+ * reaches a position the table says he wins whatever the detectives know;
+ * the table never ends a rollout as a Mr.X loss. <br>
+ * The tree is kept between searches. When the next search starts from a
+ * position already in the tree, that subtree becomes the new root and its
+ * statistics are kept. <br>
+ * Not thread safe.
+ */
+final class MonteCarloTree {
+
+	private static final double EXPLORATION = 0.7; // UCT constant, rewards are 0 or 1
+	private static final double MRX_GREEDY = 0.5; // Chance Mr.X makes the greedy rollout move
+	private static final double DETECTIVE_GREEDY = 0.75; // Chance a detective makes the greedy rollout move
+	private static final int CLOCK_INTERVAL = 63; // Iterations between deadline checks
+	private static final int MAX_ROLLOUT = 1000; // Plies, only a guard as every game ends by the last round
+
+	private final DistanceTable distances;
+	private final Tablebase tablebase;
+	private final SplittableRandom random;
+
+	private ZobristKeys keys;
+	private GameState rootState; // Position at the root, never played on
+	private Node root;
+	private long[] buffer;
+	private int iterations;
+
+	/**
+	 * @param distances hop distances for detective-usable edges
+	 * @param seed seed for the random rollouts and tie breaks
+	 */
+	MonteCarloTree(DistanceTable distances, long seed) {
+		this(distances, null, seed);
+	}
+
+	/**
+	 * @param distances hop distances for detective-usable edges
+	 * @param tablebase solved endgames to end rollouts early, null for none
+	 * @param seed seed for the random rollouts and tie breaks
+	 */
+	MonteCarloTree(DistanceTable distances, Tablebase tablebase, long seed) {
+		this.distances = distances;
+		this.tablebase = tablebase;
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Searches the given position until the deadline or iteration limit
+	 *
+	 * @param state the position to search; the tree takes a copy
+	 * @param mrXLocations null if Mr.X's location in the state is known,
+	 *        otherwise which locations he could be at, see
+	 *        {@link #moveTo(GameState, IntPredicate)}
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @param maxIterations the most iterations to run
+	 * @return the most visited move from the position, or
+	 *         {@link PackedMove#PASS} if there are none
+	 */
+	long search(GameState state, IntPredicate mrXLocations, long deadline, int maxIterations) {
+		moveTo(state, mrXLocations);
+		GameState working = rootState.copy();
+		iterations = 0;
+		while (iterations < maxIterations) {
+			if ((iterations & CLOCK_INTERVAL) == 0 && System.nanoTime() - deadline > 0) break;
+			iterate(working);
+			iterations++;
+		}
+		return bestMove();
+	}
+
+	/**
+	 * @return number of iterations the last search ran
+	 */
+	int iterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return number of times the root has been visited, including visits
+	 *         kept from earlier searches
+	 */
+	int rootVisits() {
+		return root == null ? 0 : root.visits;
+	}
+
+	/**
+	 * Writes the moves from the root and how often each was visited
+	 *
+	 * @param moves the buffer for the packed moves, at least
+	 *        {@link GameState#maxMoves()} long
+	 * @param visits the buffer for the visit counts, as long as moves
+	 * @return number of moves written
+	 */
+	int rootMoves(long[] moves, int[] visits) {
+		if (root == null || root.children == null) return 0;
+		for (int i = 0; i < root.children.length; i++) {
+			moves[i] = root.children[i].move;
+			visits[i] = root.children[i].visits;
+		}
+		return root.children.length;
+	}
+
+	/**
+	 * Makes the given position the root, keeping the subtree for it if the
+	 * tree already holds it
+	 *
+	 * @param state the position
+	 * @param mrXLocations if not null, Mr.X's location is treated as unknown:
+	 *        a subtree matching everything else is kept if Mr.X's location in
+	 *        it passes this test, and the state is searched from that location
+	 *        instead
+	 * @return the location Mr.X is searched from
+	 */
+	int moveTo(GameState state, IntPredicate mrXLocations) {
+		if (keys == null || !keys.fits(state)) {
+			keys = ZobristKeys.of(state);
+			root = null;
+		}
+		GameState target = state.copy().hashWith(keys);
+		Node match = null;
+		GameState matched = null;
+		if (root != null) {
+			Match found = new Match(target, mrXLocations);
+			find(rootState.copy(), root, state.players(), found);
+			match = found.node;
+			matched = found.state;
+		}
+		if (match == null) {
+			rootState = target;
+			root = new Node(PackedMove.PASS, -1, null);
+		} else {
+			rootState = matched;
+			root = match;
+			root.parent = null;
+		}
+		if (buffer == null || buffer.length < rootState.maxMoves())
+			buffer = new long[rootState.maxMoves()];
+		return rootState.location(MRX);
+	}
+
+	// What a subtree must match to be reused
+	private final class Match {
+		final long hash;
+		final IntPredicate mrXLocations;
+		Node node;
+		GameState state;
+
+		Match(GameState target, IntPredicate mrXLocations) {
+			this.mrXLocations = mrXLocations;
+			this.hash = mrXLocations == null ? target.hash() : withoutMrX(target);
+		}
+
+		void offer(GameState state, Node node) {
+			if (mrXLocations == null) {
+				if (state.hash() != hash) return;
+			} else if (withoutMrX(state) != hash || !mrXLocations.test(state.location(MRX))) return;
+			if (this.node == null || node.visits > this.node.visits) {
+				this.node = node;
+				this.state = state.copy();
+			}
+		}
+	}
+
+	private long withoutMrX(GameState state) {
+		return state.hash() ^ keys.location(MRX, state.location(MRX));
+	}
+
+	// Depth first search of the tree's top plies for nodes matching the position
+	private void find(GameState state, Node node, int plies, Match match) {
+		if (node != root) match.offer(state, node);
+		if (plies == 0 || node.children == null) return;
+		for (Node child : node.children) {
+			state.play(child.move);
+			find(state, child, plies - 1, match);
+			state.undo();
+		}
+	}
+
+	private void iterate(GameState state) {
+		Node node = root;
+		int depth = 0;
+		while (node.children != null && node.children.length > 0) {
+			node = select(node);
+			state.play(node.move);
+			depth++;
+		}
+		if (node.children == null && !state.isGameOver()) {
+			expand(node, state);
+			if (node.children.length > 0) {
+				node = node.children[random.nextInt(node.children.length)];
+				state.play(node.move);
+				depth++;
+			}
+		}
+		boolean mrXWins = rollout(state);
+		for (; node != null; node = node.parent) {
+			node.visits++;
+			if (node.mover >= 0 && (node.mover == MRX) == mrXWins) node.wins++;
+		}
+		for (int i = 0; i < depth; i++)
+			state.undo();
+	}
+
+	// Child with the highest upper confidence bound, unvisited children first
+	private Node select(Node node) {
+		double log = Math.log(node.visits);
+		Node best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (Node child : node.children) {
+			if (child.visits == 0) return child;
+			double value = (double) child.wins / child.visits
+					+ EXPLORATION * Math.sqrt(log / child.visits);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	// Mr.X only considers double moves when his move would be revealed, as in MrXSearch
+	private void expand(Node node, GameState state) {
+		int player = state.currentPlayer();
+		int count;
+		if (player == MRX) {
+			count = state.singleMoves(MRX, state.location(MRX), buffer, 0);
+			if (state.isReveal(state.round())) count += state.doubleMoves(buffer, count);
+		} else count = state.moves(buffer);
+		Node[] children = new Node[count];
+		for (int i = 0; i < count; i++)
+			children[i] = new Node(buffer[i], player, node);
+		node.children = children;
+	}
+
+	// Plays the game out and undoes it again, returns whether Mr.X won
+	private boolean rollout(GameState state) {
+		int played = 0;
+		boolean escaped = false;
+		while (!state.isGameOver() && played < MAX_ROLLOUT) {
+			if (tablebase != null && state.currentPlayer() == MRX
+					&& tablebase.probe(state) == Tablebase.MRX_WINS) {
+				escaped = true;
+				break;
+			}
+			state.play(rolloutMove(state));
+			played++;
+		}
+		boolean mrXWins = escaped || !state.isGameOver() || state.isMrXWinner();
+		for (int i = 0; i < played; i++)
+			state.undo();
+		return mrXWins;
+	}
+
+	private long rolloutMove(GameState state) {
+		int player = state.currentPlayer();
+		int count = state.singleMoves(player, state.location(player), buffer, 0);
+		if (count == 0) return PackedMove.PASS;
+		double greedy = player == MRX ? MRX_GREEDY : DETECTIVE_GREEDY;
+		if (random.nextDouble() >= greedy) return buffer[random.nextInt(count)];
+		long best = buffer[0];
+		int bestScore = Integer.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			int score = rolloutScore(state, player, PackedMove.destination(buffer[i]));
+			if (score > bestScore) {
+				bestScore = score;
+				best = buffer[i];
+			}
+		}
+		return best;
+	}
+
+	// Higher is better for the player: detectives close in, Mr.X keeps his distance
+	private int rolloutScore(GameState state, int player, int destination) {
+		if (player != MRX) return -distances.distance(destination, state.location(MRX));
+		int nearest = Integer.MAX_VALUE;
+		for (int detective = 1; detective < state.players(); detective++)
+			nearest = Math.min(nearest, distances.distance(state.location(detective), destination));
+		return nearest;
+	}
+
+	private long bestMove() {
+		if (root.children == null) return PackedMove.PASS;
+		Node best = null;
+		for (Node child : root.children)
+			if (best == null || child.visits > best.visits) best = child;
+		return best == null ? PackedMove.PASS : best.move;
+	}
+
+	private static final class Node {
+		final long move;
+		final int mover; // Player that made the move, -1 for a fresh root
+		Node parent;
+		Node[] children; // Null until expanded
+		int visits;
+		int wins;
+
+		Node(long move, int mover, Node parent) {
+			this.move = move;
+			this.mover = mover;
+			this.parent = parent;
+		}
+	}
+
+}
@@ -0,0 +1,724 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static uk.ac.bris.cs.scotlandyard.ai.GameState.MRX;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+/**
+ * Alpha-beta search for Mr.X. <br>
+ * Mr.X is the maximising player and the detectives minimise. How the
+ * detectives' replies are searched depends on the {@link Mode}. Moves are tried in order of killer moves, the history
+ * heuristic and a cheap static score so that cut-offs happen early. <br>
+ * {@link #iterate(int, long)} deepens the search one ply at a time until a
+ * deadline; the ordering tables carry over between depths so each iteration
+ * mostly re-confirms the previous best line. <br>
+ * Results are kept in a {@link TranspositionTable} so positions reached
+ * through different move orders, or searched on an earlier turn, are not
+ * searched again. <br>
+ * A search owns its {@link GameState} and scratch buffers, so it must only be
+ * used by one thread at a time. To use more cores, give it helpers: after the
+ * first root move has set a bound, the remaining root moves are shared out
+ * between this search and its helpers as fork-join tasks, each helper
+ * searching a copy of the state. Every root move is searched against the best
+ * score found so far by any of them. <br>
+ * {@link #enableCounters()} makes the search count what it does for
+ * {@link SearchStats}; without it the counting costs one null check per
+ * node.
+ */
+final class MrXSearch {
+
+	/**
+	 * How the detectives' replies to a Mr.X move are searched. Every mode
+	 * counts a Mr.X move and the detectives' replies as one ply each, so the
+	 * same depth looks the same number of rounds ahead.
+	 */
+	enum Mode {
+
+		/**
+		 * All detectives move together as one minimising ply over every
+		 * combination of their moves
+		 */
+		JOINT,
+
+		/**
+		 * Each detective minimises in its own ply in turn order, as the model
+		 * rotates players, so cut-offs can happen between detectives
+		 */
+		PARANOID,
+
+		/**
+		 * Best-Reply Search: only the single most dangerous detective move is
+		 * considered while the others stay put, so a round of replies costs the
+		 * sum rather than the product of the detectives' moves
+		 */
+		BEST_REPLY
+	}
+
+	static final int WIN = 10000;
+	static final int LOSS = -10000;
+
+	private static final int INFINITY = Integer.MAX_VALUE;
+	private static final int FAR = 10; // Detectives further away than this are all treated the same
+	private static final int MAX_PLY = 256;
+	private static final int NO_SCORE = Integer.MIN_VALUE;
+	private static final int KILLER_BONUS = 1 << 28;
+	private static final int KILLERS = 2;
+	private static final int CLOCK_INTERVAL = 1023; // Nodes searched between deadline checks
+
+	private final GameState state;
+	private final DistanceTable distances;
+	private final Mode mode;
+	private final long[][] moves = new long[MAX_PLY][];
+	private final int[][] orders = new int[MAX_PLY][];
+	private final JointMoves[] joint = new JointMoves[MAX_PLY];
+	private final int[][] owners = new int[MAX_PLY][]; // Detective making each best-reply move
+	private final long[] killers = new long[MAX_PLY * KILLERS];
+	private final int[] history;
+	private final TranspositionTable table;
+	private final MrXSearch[] helpers;
+
+	private volatile long bestMove = PackedMove.PASS;
+	private volatile int bestScore;
+	private int completedDepth;
+	private long deadline;
+	private boolean timed;
+	private boolean stopped;
+	private int nodes;
+	private SearchCounters counters; // Null unless counting
+
+	/**
+	 * Creates a search with its own transposition table, hashing the state if
+	 * it is not hashed yet
+	 *
+	 * @param state the state to search from, Mr.X must be the current player
+	 * @param distances hop distances for detective-usable edges
+	 */
+	MrXSearch(GameState state, DistanceTable distances) {
+		this(hashed(state), distances, new TranspositionTable(), Mode.JOINT);
+	}
+
+	/**
+	 * @param state the hashed state to search from, Mr.X must be the current
+	 *        player
+	 * @param distances hop distances for detective-usable edges
+	 * @param table the table to share results through, it must only hold
+	 *        results for states hashed with the same keys as this one and
+	 *        searched in the same mode
+	 * @param mode how to search the detectives' replies
+	 */
+	MrXSearch(GameState state, DistanceTable distances, TranspositionTable table, Mode mode) {
+		this(state, distances, table, mode, 1);
+	}
+
+	/**
+	 * @param state the hashed state to search from, Mr.X must be the current
+	 *        player
+	 * @param distances hop distances for detective-usable edges
+	 * @param table the table to share results through, it must only hold
+	 *        results for states hashed with the same keys as this one and
+	 *        searched in the same mode
+	 * @param mode how to search the detectives' replies
+	 * @param threads number of threads to split root moves between, including
+	 *        the calling one
+	 */
+	MrXSearch(GameState state, DistanceTable distances, TranspositionTable table, Mode mode,
+			int threads) {
+		if (!state.isHashed()) throw new IllegalArgumentException("State is not hashed");
+		if (threads < 1) throw new IllegalArgumentException("Need at least one thread");
+		this.state = state;
+		this.distances = distances;
+		this.table = table;
+		this.mode = mode;
+		this.history = new int[state.players() * distances.size()];
+		Arrays.fill(killers, PackedMove.PASS);
+		this.helpers = new MrXSearch[threads - 1];
+		for (int i = 0; i < helpers.length; i++)
+			helpers[i] = new MrXSearch(state.copy(), distances, table, mode, 1);
+	}
+
+	/**
+	 * Searches the current position to the given depth
+	 *
+	 * @param depth number of plies, a Mr.X move and a round of detective moves
+	 *        being one ply each
+	 * @return the best packed move for Mr.X
+	 */
+	long search(int depth) {
+		table.nextGeneration();
+		timed = false;
+		stopped = false;
+		return root(depth);
+	}
+
+	/**
+	 * Searches the current position one ply deeper at a time until the
+	 * deadline passes or the maximum depth is reached. A depth that does not
+	 * finish in time is thrown away. <br>
+	 * A depth is only started when the previous one took less than half of the
+	 * time left, as the next one will almost always take longer.
+	 *
+	 * @param maxDepth the deepest search to try
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @return the best packed move for Mr.X from the deepest completed search
+	 */
+	long iterate(int maxDepth, long deadline) {
+		table.nextGeneration();
+		this.deadline = deadline;
+		timed = true;
+		stopped = false;
+		completedDepth = 0;
+		long move = PackedMove.PASS;
+		int score = LOSS;
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			long started = System.nanoTime();
+			long candidate = root(depth);
+			if (stopped) break;
+			move = candidate;
+			score = bestScore;
+			completedDepth = depth;
+			if (Math.abs(score) >= WIN) break; // The outcome is already decided
+			long finished = System.nanoTime();
+			if ((finished - started) * 2 > deadline - finished) break;
+		}
+		if (completedDepth == 0) return bestMove; // Best guess from the unfinished search
+		bestMove = move;
+		bestScore = score;
+		return move;
+	}
+
+	/**
+	 * @return depth of the last search that {@link #iterate(int, long)}
+	 *         finished
+	 */
+	int completedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Starts counting nodes, cut-offs, table use and time spent generating
+	 * moves and scoring positions, in this search and its helpers, and the
+	 * bytes the helpers allocate on threads other than the calling one
+	 */
+	void enableCounters() {
+		counters = new SearchCounters();
+		for (MrXSearch helper : helpers)
+			helper.counters = new SearchCounters();
+	}
+
+	/**
+	 * @return everything counted since {@link #enableCounters()}, summed over
+	 *         the helpers, or null if counting is not enabled
+	 */
+	SearchCounters counters() {
+		if (counters == null) return null;
+		SearchCounters total = new SearchCounters();
+		total.add(counters);
+		for (MrXSearch helper : helpers)
+			total.add(helper.counters);
+		return total;
+	}
+
+	private long root(int depth) {
+		int ply = 0;
+		long generating = clock();
+		int count = rootMoves(ply);
+		long[] buffer = moves[ply];
+		order(ply, count);
+		if (count > 0 && bestMove != PackedMove.PASS) promote(buffer, count, bestMove);
+		generated(generating);
+		bestMove = count > 0 ? buffer[0] : PackedMove.PASS;
+		bestScore = count > 0 ? -INFINITY : LOSS;
+		// Search the expected best move alone so the others start with a good bound
+		int serial = helpers.length == 0 ? count : Math.min(1, count);
+		for (int i = 0; i < serial && !stopped; i++) {
+			int score = rootMove(buffer[i], depth, bestScore);
+			if (!stopped) offer(buffer[i], score);
+		}
+		if (!stopped && serial < count) split(buffer, serial, count, depth);
+		return bestMove;
+	}
+
+	// Shares the root moves from first to count between this search and its helpers
+	private void split(long[] buffer, int first, int count, int depth) {
+		AtomicInteger next = new AtomicInteger(first);
+		Thread caller = Thread.currentThread();
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		tasks.add(ForkJoinTask.adapt(
+				() -> searchRootMoves(this, caller, buffer, next, count, depth)));
+		for (MrXSearch helper : helpers) {
+			helper.deadline = deadline;
+			helper.timed = timed;
+			helper.stopped = false;
+			tasks.add(ForkJoinTask.adapt(
+					() -> searchRootMoves(helper, caller, buffer, next, count, depth)));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		for (MrXSearch helper : helpers)
+			stopped |= helper.stopped;
+	}
+
+	// Allocation on the calling thread is measured by whoever asked for the move
+	private void searchRootMoves(MrXSearch searcher, Thread caller, long[] buffer,
+			AtomicInteger next, int count, int depth) {
+		SearchCounters counters = Thread.currentThread() == caller ? null : searcher.counters;
+		long allocated = counters == null ? -1 : Telemetry.allocatedBytes();
+		try {
+			for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+				int score = searcher.rootMove(buffer[i], depth, bestScore);
+				if (searcher.stopped) return;
+				offer(buffer[i], score);
+			}
+		} finally {
+			if (allocated >= 0) counters.allocatedBytes += Telemetry.allocatedBytes() - allocated;
+		}
+	}
+
+	private int rootMove(long move, int depth, int alpha) {
+		state.play(move);
+		int score = min(depth - 1, 1, alpha, INFINITY);
+		state.undo();
+		return score;
+	}
+
+	// Keeps the move if it beats the best so far, whichever thread searched it
+	private synchronized void offer(long move, int score) {
+		if (score > bestScore) {
+			bestScore = score;
+			bestMove = move;
+		}
+	}
+
+	/**
+	 * @return score of the move returned by the last {@link #search(int)}
+	 */
+	int bestScore() {
+		return bestScore;
+	}
+
+	// Moves the best move of the previous iteration to the front
+	private static void promote(long[] buffer, int count, long move) {
+		for (int i = 1; i < count; i++) {
+			if (buffer[i] != move) continue;
+			System.arraycopy(buffer, 0, buffer, 1, i);
+			buffer[0] = move;
+			return;
+		}
+	}
+
+	private boolean outOfTime() {
+		if (counters != null) counters.nodes++;
+		if (timed && (++nodes & CLOCK_INTERVAL) == 0 && System.nanoTime() - deadline > 0)
+			stopped = true;
+		return stopped;
+	}
+
+	private int max(int depth, int ply, int alpha, int beta) {
+		if (outOfTime()) return 0;
+		if (state.isGameOver()) return terminal();
+		if (depth == 0) return heuristic();
+		long key = state.hash();
+		int stored = probe(key, depth, alpha, beta);
+		if (stored != NO_SCORE) return stored;
+		long hashMove = table.move(key);
+		int alphaIn = alpha;
+		long generating = clock();
+		int count = mrXMoves(ply);
+		long[] buffer = moves[ply];
+		order(ply, count);
+		if (hashMove != PackedMove.PASS) promote(buffer, count, hashMove);
+		generated(generating);
+		int best = -INFINITY;
+		long bestHere = PackedMove.PASS;
+		for (int i = 0; i < count; i++) {
+			long move = buffer[i];
+			state.play(move);
+			int score = min(depth - 1, ply + 1, alpha, beta);
+			state.undo();
+			if (stopped) return 0;
+			if (score > best) {
+				best = score;
+				bestHere = move;
+			}
+			if (best > alpha) alpha = best;
+			if (alpha >= beta) {
+				countCutoff();
+				cutoff(ply, MRX, move, depth);
+				break;
+			}
+		}
+		store(key, depth, best, alphaIn, beta, bestHere);
+		return best;
+	}
+
+	private int min(int depth, int ply, int alpha, int beta) {
+		switch (mode) {
+			case PARANOID:
+				return paranoid(depth, ply, alpha, beta);
+			case BEST_REPLY:
+				return bestReply(depth, ply, alpha, beta);
+			default:
+				return joint(depth, ply, alpha, beta);
+		}
+	}
+
+	private int joint(int depth, int ply, int alpha, int beta) {
+		if (outOfTime()) return 0;
+		if (state.isGameOver()) return terminal();
+		if (depth == 0) return heuristic();
+		long key = state.hash();
+		int stored = probe(key, depth, alpha, beta);
+		if (stored != NO_SCORE) return stored;
+		int betaIn = beta;
+		long generating = clock();
+		JointMoves rounds = detectiveRounds(ply);
+		generated(generating);
+		int best = INFINITY;
+		while (rounds.next()) { // Iterating through all possible combinations of moves from the detectives
+			if (rounds.captures(state.location(MRX))) return LOSS; // Nothing is worse for mrX than being caught
+			rounds.play(state);
+			int score = max(depth - 1, ply + 1, alpha, beta);
+			rounds.undo(state);
+			if (stopped) return 0;
+			if (score < best) best = score;
+			if (best < beta) beta = best;
+			if (alpha >= beta) {
+				countCutoff();
+				for (int detective = 1; detective < state.players(); detective++)
+					cutoff(ply, detective, rounds.move(detective - 1), depth);
+				break;
+			}
+		}
+		store(key, depth, best, alpha, betaIn, PackedMove.PASS);
+		return best;
+	}
+
+	// One detective's ply; the depth only goes down once the last detective has moved
+	private int paranoid(int depth, int ply, int alpha, int beta) {
+		if (outOfTime()) return 0;
+		if (state.isGameOver()) return terminal();
+		int detective = state.currentPlayer();
+		if (depth == 0) return heuristic();
+		long key = state.hash();
+		int stored = probe(key, depth, alpha, beta);
+		if (stored != NO_SCORE) return stored;
+		long hashMove = table.move(key);
+		int betaIn = beta;
+		long generating = clock();
+		long[] buffer = buffer(ply);
+		int count = state.singleMoves(detective, state.location(detective), buffer, 0);
+		if (count == 0) buffer[count++] = PackedMove.PASS;
+		count = filterDuplicateLocations(buffer, count);
+		int[] order = orders[ply];
+		for (int i = 0; i < count; i++) order[i] = detectiveOrder(ply, detective, buffer[i]);
+		sort(buffer, order, count);
+		if (hashMove != PackedMove.PASS) promote(buffer, count, hashMove);
+		generated(generating);
+		boolean last = detective == state.players() - 1;
+		int best = INFINITY;
+		long bestHere = PackedMove.PASS;
+		for (int i = 0; i < count; i++) {
+			long move = buffer[i];
+			state.play(move);
+			int score = last ? max(depth - 1, ply + 1, alpha, beta)
+					: paranoid(depth, ply + 1, alpha, beta);
+			state.undo();
+			if (stopped) return 0;
+			if (score < best) {
+				best = score;
+				bestHere = move;
+			}
+			if (best < beta) beta = best;
+			if (alpha >= beta) {
+				countCutoff();
+				cutoff(ply, detective, move, depth);
+				break;
+			}
+		}
+		store(key, depth, best, alpha, betaIn, bestHere);
+		return best;
+	}
+
+	// The most dangerous single detective move, every other detective passes
+	private int bestReply(int depth, int ply, int alpha, int beta) {
+		if (outOfTime()) return 0;
+		if (state.isGameOver()) return terminal();
+		if (depth == 0) return heuristic();
+		long key = state.hash();
+		int stored = probe(key, depth, alpha, beta);
+		if (stored != NO_SCORE) return stored;
+		int betaIn = beta;
+		long generating = clock();
+		int count = bestReplies(ply);
+		generated(generating);
+		long[] buffer = moves[ply];
+		int[] owner = owners[ply];
+		int mrX = state.location(MRX);
+		for (int i = 0; i < count; i++)
+			if (PackedMove.destination(buffer[i]) == mrX) return LOSS; // Nothing is worse for mrX than being caught
+		int best = INFINITY;
+		for (int i = 0; i < count; i++) {
+			long move = buffer[i];
+			for (int detective = 1; detective < state.players(); detective++)
+				state.play(detective == owner[i] ? move : PackedMove.PASS);
+			int score = max(depth - 1, ply + 1, alpha, beta);
+			for (int detective = 1; detective < state.players(); detective++) state.undo();
+			if (stopped) return 0;
+			if (score < best) best = score;
+			if (best < beta) beta = best;
+			if (alpha >= beta) {
+				countCutoff();
+				cutoff(ply, owner[i], move, depth);
+				break;
+			}
+		}
+		store(key, depth, best, alpha, betaIn, PackedMove.PASS);
+		return best;
+	}
+
+	// Every detective's moves in one list, best first, remembering whose each move is
+	private int bestReplies(int ply) {
+		long[] buffer = buffer(ply);
+		int[] order = orders[ply];
+		int[] owner = owners[ply];
+		int count = 0;
+		for (int detective = 1; detective < state.players(); detective++) {
+			int added = state.singleMoves(detective, state.location(detective), buffer, count);
+			added = filterDuplicateLocations(buffer, count, added);
+			for (int i = count; i < count + added; i++) {
+				order[i] = detectiveOrder(ply, detective, buffer[i]);
+				owner[i] = detective;
+			}
+			count += added;
+		}
+		// Insertion sort carrying the owners along
+		for (int i = 1; i < count; i++) {
+			long move = buffer[i];
+			int score = order[i];
+			int who = owner[i];
+			int j = i - 1;
+			while (j >= 0 && order[j] < score) {
+				buffer[j + 1] = buffer[j];
+				order[j + 1] = order[j];
+				owner[j + 1] = owner[j];
+				j--;
+			}
+			buffer[j + 1] = move;
+			order[j + 1] = score;
+			owner[j + 1] = who;
+		}
+		return count;
+	}
+
+	// The stored score if it settles this node, otherwise NO_SCORE
+	private int probe(long key, int depth, int alpha, int beta) {
+		int entry = table.probe(key);
+		if (counters != null) {
+			counters.tableProbes++;
+			if (entry != TranspositionTable.MISSING) counters.tableHits++;
+		}
+		if (entry == TranspositionTable.MISSING || table.depth(entry) < depth) return NO_SCORE;
+		int score = table.score(entry);
+		int bound = table.bound(entry);
+		if (bound == TranspositionTable.EXACT
+				|| bound == TranspositionTable.LOWER && score >= beta
+				|| bound == TranspositionTable.UPPER && score <= alpha) {
+			if (counters != null) counters.tableCutoffs++;
+			return score;
+		}
+		return NO_SCORE;
+	}
+
+	// Records the result of a finished node and whether it is exact or a bound
+	private void store(long key, int depth, int best, int alpha, int beta, long move) {
+		if (best == INFINITY || best == -INFINITY) return; // Nothing was searched
+		int bound = best <= alpha ? TranspositionTable.UPPER
+				: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		table.store(key, depth, bound, best, move);
+	}
+
+	private static GameState hashed(GameState state) {
+		return state.isHashed() ? state : state.hashWith(ZobristKeys.of(state));
+	}
+
+	// Only look at double moves on reveal rounds (when he has some), single moves otherwise.
+	private int rootMoves(int ply) {
+		long[] buffer = buffer(ply);
+		int singles = state.singleMoves(MRX, state.location(MRX), buffer, 0);
+		if (!state.isReveal(state.round())) return filterDuplicateLocations(buffer, singles);
+		int doubles = state.doubleMoves(buffer, singles);
+		if (doubles == 0) return filterDuplicateLocations(buffer, singles);
+		System.arraycopy(buffer, singles, buffer, 0, doubles);
+		return filterDuplicateLocations(buffer, doubles);
+	}
+
+	// Single moves, plus double moves when this move would be revealed
+	private int mrXMoves(int ply) {
+		long[] buffer = buffer(ply);
+		int count = state.singleMoves(MRX, state.location(MRX), buffer, 0);
+		if (state.isReveal(state.round())) count += state.doubleMoves(buffer, count);
+		return filterDuplicateLocations(buffer, count);
+	}
+
+	// Every combination of detective moves where no two detectives share a destination, enumerated lazily
+	private JointMoves detectiveRounds(int ply) {
+		if (joint[ply] == null) joint[ply] = new JointMoves(state.players() - 1, state.maxMoves());
+		JointMoves rounds = joint[ply];
+		rounds.reset();
+		buffer(ply); // Allocates the ply's order scores
+		int[] order = orders[ply];
+		for (int detective = 1; detective < state.players(); detective++) {
+			long[] buffer = rounds.moves(detective - 1);
+			int count = state.singleMoves(detective, state.location(detective), buffer, 0);
+			if (count == 0) buffer[count++] = PackedMove.PASS;
+			count = filterDuplicateLocations(buffer, count);
+			for (int i = 0; i < count; i++) order[i] = detectiveOrder(ply, detective, buffer[i]);
+			sort(buffer, order, count);
+			rounds.count(detective - 1, count);
+		}
+		return rounds;
+	}
+
+	private long[] buffer(int ply) {
+		if (moves[ply] == null) {
+			// A best-reply ply holds every detective's moves at once
+			int size = mode == Mode.BEST_REPLY ? state.maxMoves() * state.players()
+					: state.maxMoves();
+			moves[ply] = new long[size];
+			orders[ply] = new int[size];
+			if (mode == Mode.BEST_REPLY) owners[ply] = new int[size];
+		}
+		return moves[ply];
+	}
+
+	// Keeps the first move to each destination, tickets are picked once the search is over
+	private static int filterDuplicateLocations(long[] buffer, int count) {
+		return filterDuplicateLocations(buffer, 0, count);
+	}
+
+	// Same as above, for the count moves starting at offset
+	private static int filterDuplicateLocations(long[] buffer, int offset, int count) {
+		int kept = offset;
+		for (int i = offset; i < offset + count; i++) {
+			boolean duplicate = false;
+			for (int j = offset; j < kept && !duplicate; j++) {
+				duplicate = PackedMove.isPass(buffer[i]) ? PackedMove.isPass(buffer[j])
+						: !PackedMove.isPass(buffer[j]) && PackedMove.finalDestination(
+								buffer[i]) == PackedMove.finalDestination(buffer[j]);
+			}
+			if (!duplicate) buffer[kept++] = buffer[i];
+		}
+		return kept - offset;
+	}
+
+	private void order(int ply, int count) {
+		long[] buffer = moves[ply];
+		int[] order = orders[ply];
+		for (int i = 0; i < count; i++) order[i] = mrXOrder(ply, buffer[i]);
+		sort(buffer, order, count);
+	}
+
+	// Cheap static score of a mrX move: stay away from the nearest detectives
+	private int mrXOrder(int ply, long move) {
+		int destination = PackedMove.finalDestination(move);
+		int score = history[MRX * distances.size() + destination];
+		for (int k = 0; k < KILLERS; k++)
+			if (killers[ply * KILLERS + k] == move) score += KILLER_BONUS >> k;
+		for (int detective = 1; detective < state.players(); detective++) {
+			int d = Math.min(FAR, distances.distance(state.location(detective), destination));
+			score += d <= 1 ? -FAR * FAR : d * d;
+		}
+		return score;
+	}
+
+	// Cheap static score of a detective move: get closer to mrX
+	private int detectiveOrder(int ply, int detective, long move) {
+		if (PackedMove.isPass(move)) return -INFINITY;
+		int destination = PackedMove.destination(move);
+		int score = history[detective * distances.size() + destination];
+		for (int k = 0; k < KILLERS; k++)
+			if (killers[ply * KILLERS + k] == move) score += KILLER_BONUS >> k;
+		int d = Math.min(FAR, distances.distance(destination, state.location(MRX)));
+		return score + (FAR - d) * FAR;
+	}
+
+	// Start of a timed stretch, only read the clock when counting
+	private long clock() {
+		return counters == null ? 0 : System.nanoTime();
+	}
+
+	private void generated(long started) {
+		if (counters != null) counters.generationNanos += System.nanoTime() - started;
+	}
+
+	private void countCutoff() {
+		if (counters != null) counters.cutoffs++;
+	}
+
+	// Remember a move that caused a cut-off so it is tried early elsewhere
+	private void cutoff(int ply, int player, long move, int depth) {
+		if (PackedMove.isPass(move)) return;
+		int destination = PackedMove.finalDestination(move);
+		history[player * distances.size() + destination] += depth * depth;
+		if (mode == Mode.JOINT && player > 1) return; // Joint plies only keep killers for the first detective
+		int slot = ply * KILLERS;
+		if (killers[slot] != move) {
+			killers[slot + 1] = killers[slot];
+			killers[slot] = move;
+		}
+	}
+
+	// Insertion sort on descending order score, move lists are short
+	private static void sort(long[] buffer, int[] order, int count) {
+		for (int i = 1; i < count; i++) {
+			long move = buffer[i];
+			int score = order[i];
+			int j = i - 1;
+			while (j >= 0 && order[j] < score) {
+				buffer[j + 1] = buffer[j];
+				order[j + 1] = order[j];
+				j--;
+			}
+			buffer[j + 1] = move;
+			order[j + 1] = score;
+		}
+	}
+
+	/**
+	 * Scores the current state for Mr.X, higher is better
+	 *
+	 * @return the score
+	 */
+	int evaluate() {
+		return state.isGameOver() ? terminal() : heuristic();
+	}
+
+	private int terminal() {
+		return state.isMrXWinner() ? WIN : LOSS;
+	}
+
+	private int heuristic() {
+		if (counters == null) return score();
+		long started = System.nanoTime();
+		int score = score();
+		counters.evaluationNanos += System.nanoTime() - started;
+		return score;
+	}
+
+	private int score() {
+		int score = state.mrXMoveCount() * 2; // Prioritises moves with larger amounts of valid moves
+		for (int detective = 1; detective < state.players(); detective++) {
+			int d = Math.min(FAR, distances.distance(state.location(detective), state.location(MRX))); // How many moves the detective needs to reach mrX
+			if (d == 1) score -= 150; // If a player is one move away then getting away from them has very high priority
+			score += 40 * (d - 3) / d; // Closer players lose him a lot more score
+		}
+		return score;
+	}
+
+}
@@ -0,0 +1,144 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.NeighbourMasks;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveVisitor;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * A {@link Spectator} that keeps track of every location Mr.X could be at,
+ * using only what the detectives can see. <br>
+ * The possible locations are a bitmask indexed by node. A reveal narrows
+ * them down to one location; a hidden move expands them to every neighbour
+ * reachable with the ticket Mr.X used that is not occupied by a detective,
+ * using the graph's {@link NeighbourMasks}; a detective moving onto a
+ * possible location without catching Mr.X rules it out. Each move only
+ * touches the current set, nothing is recomputed from the start of the game.
+ * <br>
+ * Updates happen on the game thread; {@link #possibleLocations()} may be read
+ * from any thread and always returns a consistent snapshot.
+ */
+public class MrXTracker implements Spectator {
+
+	private final NeighbourMasks<Transport> masks;
+	private final int[] kinds = new int[Ticket.values().length]; // Transports each ticket can be used on
+	private final long[] possible;
+	private final long[] next;
+	private final long[] detectives;
+	private volatile BitSet snapshot;
+
+	/**
+	 * Creates a tracker for a game that has not started yet, Mr.X may be at
+	 * any location no detective is at
+	 *
+	 * @param view the view of the game; not null
+	 */
+	public MrXTracker(ScotlandYardView view) {
+		Objects.requireNonNull(view);
+		Graph<Integer, Transport> graph = view.getGraph();
+		masks = NeighbourMasks.of(graph, Transport.class);
+		for (Transport transport : Transport.values())
+			kinds[Ticket.fromTransport(transport).ordinal()] |= masks.kind(transport);
+		kinds[Ticket.Secret.ordinal()] = masks.allKinds(); // Secret tickets work on any edge
+		possible = masks.newSet();
+		next = masks.newSet();
+		detectives = masks.newSet();
+		for (Node<Integer> node : graph.getNodes())
+			set(possible, node.value());
+		List<Colour> players = view.getPlayers();
+		for (Colour colour : players)
+			if (colour.isDetective()) clear(possible, view.getPlayerLocation(colour));
+		publish();
+	}
+
+	private void set(long[] nodes, int node) {
+		if (node >= 0 && node < masks.size()) nodes[node >>> 6] |= 1L << node;
+	}
+
+	private void clear(long[] nodes, int node) {
+		if (node >= 0 && node < masks.size()) nodes[node >>> 6] &= ~(1L << node);
+	}
+
+	private static boolean get(long[] nodes, int node) {
+		return node >= 0 && node >>> 6 < nodes.length && (nodes[node >>> 6] & 1L << node) != 0;
+	}
+
+	/**
+	 * @return a snapshot of the locations Mr.X could be at; never null
+	 */
+	public BitSet possibleLocations() {
+		return (BitSet) snapshot.clone();
+	}
+
+	/**
+	 * @param location the location
+	 * @return true if Mr.X could be at the location
+	 */
+	public boolean isPossible(int location) {
+		return location >= 0 && snapshot.get(location);
+	}
+
+	/**
+	 * @return number of locations Mr.X could be at
+	 */
+	public int count() {
+		return snapshot.cardinality();
+	}
+
+	@Override
+	public void onMoveMade(ScotlandYardView view, Move move) {
+		// double moves are also announced as their two ticket moves, which are
+		// the ones tracked here
+		move.visit(new MoveVisitor() {
+			@Override
+			public void visit(TicketMove move) {
+				if (move.colour().isMrX()) onMrXMove(view, move);
+				else onDetectiveMove(move.destination());
+			}
+
+			@Override
+			public void visit(PassMove move) {}
+		});
+	}
+
+	private void onMrXMove(ScotlandYardView view, TicketMove move) {
+		// the round has already been advanced past this move when it is announced
+		int round = view.getCurrentRound() - 1;
+		List<Boolean> rounds = view.getRounds();
+		if (round >= 0 && round < rounds.size() && rounds.get(round)) {
+			Arrays.fill(possible, 0);
+			set(possible, move.destination());
+		} else {
+			Arrays.fill(detectives, 0);
+			for (Colour colour : view.getPlayers())
+				if (colour.isDetective()) set(detectives, view.getPlayerLocation(colour));
+			masks.step(possible, kinds[move.ticket().ordinal()], detectives, next);
+			System.arraycopy(next, 0, possible, 0, possible.length);
+		}
+		publish();
+	}
+
+	private void onDetectiveMove(int destination) {
+		if (!get(possible, destination)) return;
+		clear(possible, destination); // the game would be over had Mr.X been there
+		publish();
+	}
+
+	private void publish() {
+		snapshot = BitSet.valueOf(possible);
+	}
+
+}
@@ -0,0 +1,198 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static uk.ac.bris.cs.scotlandyard.ai.GameState.MRX;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * Precomputed first moves for Mr.X, written by {@link OpeningBookGenerator}
+ * and memory-mapped for reading. <br>
+ * A position's {@link #key(GameState)} covers the round, the reveal schedule,
+ * Mr.X's location and tickets, and every detective's location and tickets
+ * regardless of colour, so the same start is found whichever detective stands
+ * where. The file is a header followed by an open-addressed hash table of
+ * {@code (long key, int destination)} slots with room to spare, so a probe
+ * reads a slot or two whatever the size of the book. <br>
+ * File layout, big-endian: magic {@code "SYOB"}, version, search depth the
+ * moves were found at, number of slots (a power of two), then the slots; a
+ * key of zero marks an empty slot.
+ */
+final class OpeningBook {
+
+	/**
+	 * The system property naming the book file
+	 */
+	static final String PROPERTY = "scotlandyard.book";
+
+	/**
+	 * Destination returned when the position is not in the book
+	 */
+	static final int MISSING = -1;
+
+	private static final int MAGIC = 0x53594F42; // "SYOB"
+	private static final int VERSION = 1;
+	private static final int HEADER = 16;
+	private static final int SLOT = 12;
+	private static final int TICKETS = Ticket.values().length;
+
+	private final ByteBuffer slots;
+	private final int mask;
+	private final int depth;
+
+	private OpeningBook(ByteBuffer slots, int capacity, int depth) {
+		this.slots = slots;
+		this.mask = capacity - 1;
+		this.depth = depth;
+	}
+
+	/**
+	 * @return the book named by the {@code scotlandyard.book} property, or null
+	 *         if it is not set
+	 * @throws UncheckedIOException if the book cannot be read
+	 */
+	static OpeningBook fromProperty() {
+		String path = System.getProperty(PROPERTY);
+		if (path == null) return null;
+		try {
+			return load(Paths.get(path));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read opening book " + path, e);
+		}
+	}
+
+	/**
+	 * Maps a book file into memory
+	 *
+	 * @param path the file; not null
+	 * @return the book; never null
+	 * @throws IOException if the file cannot be read or is not a book
+	 */
+	static OpeningBook load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER || buffer.getInt(0) != MAGIC)
+				throw new IOException(path + " is not an opening book");
+			if (buffer.getInt(4) != VERSION)
+				throw new IOException("Unsupported opening book version " + buffer.getInt(4));
+			int depth = buffer.getInt(8);
+			int capacity = buffer.getInt(12);
+			if (capacity < 1 || Integer.bitCount(capacity) != 1
+					|| buffer.remaining() != HEADER + (long) capacity * SLOT)
+				throw new IOException(path + " is truncated or corrupt");
+			return new OpeningBook(buffer, capacity, depth);
+		}
+	}
+
+	/**
+	 * Writes a book file
+	 *
+	 * @param path the file to write, replaced if it exists; not null
+	 * @param depth the search depth the moves were found at
+	 * @param keys the {@link #key(GameState)} of each position; not null
+	 * @param destinations Mr.X's final destination for each position; not null
+	 * @param count number of positions
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(Path path, int depth, long[] keys, int[] destinations, int count)
+			throws IOException {
+		int capacity = Integer.highestOneBit(Math.max(1, count * 2 - 1)) << 1; // At most half full
+		long[] tableKeys = new long[capacity];
+		int[] tableDestinations = new int[capacity];
+		for (int i = 0; i < count; i++) {
+			int slot = slot(keys[i], capacity - 1);
+			while (tableKeys[slot] != 0 && tableKeys[slot] != keys[i])
+				slot = (slot + 1) & (capacity - 1);
+			tableKeys[slot] = keys[i];
+			tableDestinations[slot] = destinations[i];
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(depth);
+			out.writeInt(capacity);
+			for (int slot = 0; slot < capacity; slot++) {
+				out.writeLong(tableKeys[slot]);
+				out.writeInt(tableDestinations[slot]);
+			}
+		}
+	}
+
+	/**
+	 * @return the search depth the moves in the book were found at
+	 */
+	int depth() {
+		return depth;
+	}
+
+	/**
+	 * @param state the state, Mr.X must be the current player; not null
+	 * @return Mr.X's final destination for the best move from the state, or
+	 *         {@link #MISSING} if the state is not in the book
+	 */
+	int probe(GameState state) {
+		long key = key(state);
+		for (int slot = slot(key, mask);; slot = (slot + 1) & mask) {
+			int offset = HEADER + slot * SLOT;
+			long stored = slots.getLong(offset);
+			if (stored == 0) return MISSING;
+			if (stored == key) return slots.getInt(offset + Long.BYTES);
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		return (int) (key ^ key >>> 32) & mask;
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return a non-zero key for the state that does not depend on which
+	 *         detective is which colour
+	 */
+	static long key(GameState state) {
+		long key = mix(state.round());
+		for (int round = 0; round < state.totalRounds(); round++)
+			key = mix(key ^ (state.isReveal(round) ? 1 : 2));
+		key = mix(key ^ player(state, MRX));
+		long[] detectives = new long[state.players() - 1];
+		for (int detective = 1; detective < state.players(); detective++)
+			detectives[detective - 1] = player(state, detective);
+		Arrays.sort(detectives);
+		for (long detective : detectives)
+			key = mix(key ^ detective);
+		return key == 0 ? 1 : key;
+	}
+
+	private static long player(GameState state, int player) {
+		long key = mix(state.location(player));
+		for (Ticket ticket : Ticket.values())
+			key = mix(key * TICKETS ^ state.tickets(player, ticket));
+		return key;
+	}
+
+	// SplitMix64 finaliser
+	private static long mix(long z) {
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+
+	@Override
+	public String toString() {
+		return "OpeningBook{" + "slots=" + (mask + 1) + ", depth=" + depth + '}';
+	}
+
+}
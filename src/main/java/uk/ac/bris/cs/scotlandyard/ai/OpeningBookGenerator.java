@@ -0,0 +1,217 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceTable;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Offline tool that writes an {@link OpeningBook} of Mr.X's first move from
+ * every standard start. <br>
+ * A standard start puts Mr.X on one of {@link StandardGame#MRX_LOCATIONS} and
+ * the detectives on distinct {@link StandardGame#DETECTIVE_LOCATIONS}, with
+ * standard tickets, so there are 12 times 14-choose-n of them for n
+ * detectives. Each one is searched by {@link MrXSearch} with iterative
+ * deepening, up to a maximum depth or a time limit per position, and the
+ * header records the shallowest depth any position finished. <br>
+ * Usage:
+ *
+ * <pre>
+ * mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.ai.OpeningBookGenerator \
+ *     -Dexec.args="--out opening.book --depth 8 --seconds 60"
+ * </pre>
+ *
+ * Options are {@code --out} (required), {@code --depth} (default 8),
+ * {@code --seconds} per position (default 60), {@code --players} for the
+ * number of detectives (default 5), {@code --threads} (default one per core),
+ * {@code --limit} to stop after that many positions (default all),
+ * {@code --mode} ({@code JOINT}, {@code PARANOID} or {@code BEST_REPLY},
+ * default {@code JOINT}) and {@code --mrx-tickets} as taxi,bus,underground
+ * counts to give Mr.X on top of his standard secret and double tickets
+ * (default 4,3,3 as in {@link StandardGame#generateBoardGameMrXTickets()}).
+ * Play with the book by passing {@code -Dscotlandyard.book=opening.book} to
+ * the game. <br>
+ * A book entry's key covers every player's tickets, so a book only serves
+ * games that start with the tickets it was written for and the same number
+ * of detectives. The defaults match the games of
+ * {@link uk.ac.bris.cs.scotlandyard.tournament.HeadlessGame}; for games set
+ * up in the UI, pass the Mr.X tickets chosen there. Starts Mr.X has no move
+ * from are left out, and the generator fails rather than write a book
+ * without any.
+ */
+public final class OpeningBookGenerator {
+
+	private static final Colour[] DETECTIVES = {
+			Colour.Blue, Colour.Green, Colour.Red, Colour.White, Colour.Yellow };
+	private static final Player IDLE = (view, location, moves, callback) -> {};
+
+	private OpeningBookGenerator() {}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		String out = options.get("out");
+		if (out == null) throw new IllegalArgumentException("--out is required");
+		int depth = Integer.parseInt(options.getOrDefault("depth", "8"));
+		long nanos = Long.parseLong(options.getOrDefault("seconds", "60")) * 1_000_000_000L;
+		int players = Integer.parseInt(options.getOrDefault("players", "5"));
+		int threads = Integer.parseInt(options.getOrDefault("threads",
+				String.valueOf(Runtime.getRuntime().availableProcessors())));
+		MrXSearch.Mode mode = MrXSearch.Mode.valueOf(options.getOrDefault("mode", "JOINT"));
+		Map<Ticket, Integer> mrXTickets = mrXTickets(options.get("mrx-tickets"));
+		if (players < 1 || players > DETECTIVES.length)
+			throw new IllegalArgumentException("Bad detective count " + players);
+		if (depth < 1 || threads < 1) throw new IllegalArgumentException(
+				"Need a depth and a thread");
+
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		DistanceTable distances = DistanceTable.of(graph, transport -> transport != Transport.Boat);
+		List<int[]> starts = starts(players);
+		starts.removeIf(start -> state(graph, start, mrXTickets).mrXMoveCount() == 0);
+		if (starts.isEmpty()) throw new IllegalArgumentException(
+				"Mr.X cannot move from any start with tickets " + mrXTickets);
+		int count = Math.min(starts.size(),
+				Integer.parseInt(options.getOrDefault("limit", String.valueOf(starts.size()))));
+		long[] keys = new long[count];
+		int[] destinations = new int[count];
+		int[] depths = new int[count];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+		int every = Math.max(1, count / 100);
+
+		List<Callable<Void>> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(() -> {
+				ZobristKeys zobrist = null;
+				TranspositionTable table = null;
+				for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+					GameState state = state(graph, starts.get(i), mrXTickets);
+					if (zobrist == null || !zobrist.fits(state)) {
+						zobrist = ZobristKeys.of(state);
+						table = new TranspositionTable();
+					}
+					MrXSearch search = new MrXSearch(state.hashWith(zobrist), distances, table,
+							mode, 1);
+					long move = search.iterate(depth, System.nanoTime() + nanos);
+					keys[i] = OpeningBook.key(state);
+					destinations[i] = PackedMove.isPass(move) ? OpeningBook.MISSING
+							: PackedMove.finalDestination(move);
+					depths[i] = search.completedDepth();
+					int finished = done.incrementAndGet();
+					if (finished % every == 0) System.err.println(finished + "/" + count);
+				}
+				return null;
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (Future<Void> future : executor.invokeAll(workers)) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Search failed", e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Positions Mr.X cannot move from are left out, the live search handles them
+		int kept = 0;
+		int shallowest = depth;
+		for (int i = 0; i < count; i++) {
+			if (destinations[i] == OpeningBook.MISSING) continue;
+			keys[kept] = keys[i];
+			destinations[kept] = destinations[i];
+			shallowest = Math.min(shallowest, depths[i]);
+			kept++;
+		}
+		if (kept == 0) throw new IllegalStateException("No start has a move, nothing to write");
+		OpeningBook.write(Paths.get(out), shallowest, keys, destinations, kept);
+		System.out.printf("%d positions written to %s, searched at least %d plies%n", kept, out,
+				shallowest);
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		return options;
+	}
+
+	private static Map<Ticket, Integer> mrXTickets(String counts) {
+		Map<Ticket, Integer> tickets = StandardGame.generateBoardGameMrXTickets();
+		if (counts == null) return tickets;
+		String[] values = counts.split(",");
+		if (values.length != 3) throw new IllegalArgumentException(
+				"Expected taxi,bus,underground counts, got " + counts);
+		tickets.put(Ticket.Taxi, Integer.parseInt(values[0].trim()));
+		tickets.put(Ticket.Bus, Integer.parseInt(values[1].trim()));
+		tickets.put(Ticket.Underground, Integer.parseInt(values[2].trim()));
+		return tickets;
+	}
+
+	// Mr.X's location followed by the detectives', for every standard start
+	private static List<int[]> starts(int players) {
+		List<Integer> candidates = StandardGame.DETECTIVE_LOCATIONS;
+		List<int[]> starts = new ArrayList<>();
+		for (int mrX : StandardGame.MRX_LOCATIONS) {
+			int[] chosen = new int[players];
+			for (int i = 0; i < players; i++) chosen[i] = i;
+			while (true) {
+				int[] start = new int[players + 1];
+				start[0] = mrX;
+				boolean clash = false;
+				for (int i = 0; i < players; i++) {
+					start[i + 1] = candidates.get(chosen[i]);
+					clash |= start[i + 1] == mrX;
+				}
+				if (!clash) starts.add(start);
+				// Next combination in lexicographic order
+				int i = players - 1;
+				while (i >= 0 && chosen[i] == candidates.size() - players + i) i--;
+				if (i < 0) break;
+				chosen[i]++;
+				for (int j = i + 1; j < players; j++) chosen[j] = chosen[j - 1] + 1;
+			}
+		}
+		return starts;
+	}
+
+	private static GameState state(Graph<Integer, Transport> graph, int[] start,
+			Map<Ticket, Integer> mrXTickets) {
+		PlayerConfiguration mrX = new PlayerConfiguration.Builder(Colour.Black)
+				.at(start[0]).with(mrXTickets).using(IDLE).build();
+		PlayerConfiguration[] detectives = new PlayerConfiguration[start.length - 1];
+		for (int i = 0; i < detectives.length; i++) {
+			detectives[i] = new PlayerConfiguration.Builder(DETECTIVES[i])
+					.at(start[i + 1]).with(StandardGame.generateDetectiveTickets()).using(IDLE)
+					.build();
+		}
+		ScotlandYardModel model = new ScotlandYardModel(StandardGame.ROUNDS, graph, mrX,
+				detectives[0], Arrays.copyOfRange(detectives, 1, detectives.length));
+		return GameState.of(model, start[0]);
+	}
+
+}
@@ -1,5 +1,8 @@
 package uk.ac.bris.cs.scotlandyard.ai;
 
+import java.time.Duration;
+import java.util.Optional;
+
 import javafx.geometry.Point2D;
 import javafx.scene.image.Image;
 import uk.ac.bris.cs.gamekit.graph.Graph;
@@ -45,4 +48,15 @@ public interface ResourceProvider {
 	 */
 	Point2D coordinateAtNode(int node);
 
+	/**
+	 * Retrieves the time a player is given to make a move in the current game,
+	 * AIs that search should aim to answer well within this time
+	 *
+	 * @return the timeout or empty if the game has no timeout; defaults to
+	 *         empty; never null
+	 */
+	default Optional<Duration> getTimeout() {
+		return Optional.empty();
+	}
+
 }
@@ -0,0 +1,35 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+/**
+ * Counters a search bumps while it runs, see {@link SearchStats} for what
+ * each one means. <br>
+ * A search only has counters while its AI records telemetry; each thread of a
+ * parallel search has its own and they are added up afterwards, so the
+ * counters are plain fields.
+ */
+final class SearchCounters {
+
+	long nodes;
+	long cutoffs;
+	long tableProbes;
+	long tableHits;
+	long tableCutoffs;
+	long generationNanos;
+	long evaluationNanos;
+	long allocatedBytes; // Only by helper threads, the calling thread is measured by the AI
+
+	/**
+	 * @param other counters to add to these; not changed
+	 */
+	void add(SearchCounters other) {
+		nodes += other.nodes;
+		cutoffs += other.cutoffs;
+		tableProbes += other.tableProbes;
+		tableHits += other.tableHits;
+		tableCutoffs += other.tableCutoffs;
+		generationNanos += other.generationNanos;
+		evaluationNanos += other.evaluationNanos;
+		allocatedBytes += other.allocatedBytes;
+	}
+
+}
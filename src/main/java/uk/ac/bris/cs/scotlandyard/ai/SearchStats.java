@@ -0,0 +1,200 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+
+/**
+ * What one search did to choose one move, as recorded by {@link Telemetry}.
+ * <br>
+ * Times are wall clock nanoseconds summed over every thread of the search,
+ * so with several threads generation and evaluation time can add up to more
+ * than the elapsed time. <br>
+ * Allocation is measured in bytes, not as a number of allocations: the JVM
+ * keeps a running total of the bytes each thread has allocated, but counting
+ * objects would take an agent or a profiler.
+ */
+public final class SearchStats {
+
+	private final String ai;
+	private final Colour colour;
+	private final int round;
+	private final String move;
+	private final int depth;
+	private final int threads;
+	private final long nodes;
+	private final long cutoffs;
+	private final long tableProbes;
+	private final long tableHits;
+	private final long tableCutoffs;
+	private final long generationNanos;
+	private final long evaluationNanos;
+	private final long elapsedNanos;
+	private final long allocatedBytes;
+
+	/**
+	 * @param allocatedBytes bytes allocated by the thread asked for the move,
+	 *        or -1 if the JVM cannot tell; the counters add the helper threads
+	 */
+	SearchStats(String ai, Colour colour, int round, String move, int depth, int threads,
+			SearchCounters counters, long elapsedNanos, long allocatedBytes) {
+		this.ai = Objects.requireNonNull(ai);
+		this.colour = Objects.requireNonNull(colour);
+		this.round = round;
+		this.move = Objects.requireNonNull(move);
+		this.depth = depth;
+		this.threads = threads;
+		this.nodes = counters.nodes;
+		this.cutoffs = counters.cutoffs;
+		this.tableProbes = counters.tableProbes;
+		this.tableHits = counters.tableHits;
+		this.tableCutoffs = counters.tableCutoffs;
+		this.generationNanos = counters.generationNanos;
+		this.evaluationNanos = counters.evaluationNanos;
+		this.elapsedNanos = elapsedNanos;
+		this.allocatedBytes = allocatedBytes < 0 ? -1 : allocatedBytes + counters.allocatedBytes;
+	}
+
+	/**
+	 * @return name of the AI that searched
+	 */
+	public String ai() {
+		return ai;
+	}
+
+	/**
+	 * @return the player the move was chosen for
+	 */
+	public Colour colour() {
+		return colour;
+	}
+
+	/**
+	 * @return the round the move was chosen in
+	 */
+	public int round() {
+		return round;
+	}
+
+	/**
+	 * @return the chosen move
+	 */
+	public String move() {
+		return move;
+	}
+
+	/**
+	 * @return deepest completed search depth in plies
+	 */
+	public int depth() {
+		return depth;
+	}
+
+	/**
+	 * @return number of threads the search was split between
+	 */
+	public int threads() {
+		return threads;
+	}
+
+	/**
+	 * @return number of positions visited
+	 */
+	public long nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return number of alpha-beta cut-offs
+	 */
+	public long cutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * @return number of transposition table lookups
+	 */
+	public long tableProbes() {
+		return tableProbes;
+	}
+
+	/**
+	 * @return number of lookups that found the position, at any depth
+	 */
+	public long tableHits() {
+		return tableHits;
+	}
+
+	/**
+	 * @return number of lookups whose stored result settled the position
+	 *         without searching it
+	 */
+	public long tableCutoffs() {
+		return tableCutoffs;
+	}
+
+	/**
+	 * @return nanoseconds spent generating and ordering moves
+	 */
+	public long generationNanos() {
+		return generationNanos;
+	}
+
+	/**
+	 * @return nanoseconds spent scoring leaf positions
+	 */
+	public long evaluationNanos() {
+		return evaluationNanos;
+	}
+
+	/**
+	 * @return nanoseconds from being asked for a move to answering
+	 */
+	public long elapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return bytes allocated while choosing the move, by the thread that was
+	 *         asked for it and by the search's helper threads, or -1 if the
+	 *         JVM cannot tell
+	 */
+	public long allocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the stats as a single line JSON object
+	 */
+	public String toJson() {
+		return String.format(Locale.ROOT, "{\"ai\":\"%s\",\"colour\":\"%s\",\"round\":%d,"
+				+ "\"move\":\"%s\",\"depth\":%d,\"threads\":%d,\"nodes\":%d,\"cutoffs\":%d,"
+				+ "\"tableProbes\":%d,\"tableHits\":%d,\"tableCutoffs\":%d,"
+				+ "\"generationNanos\":%d,\"evaluationNanos\":%d,\"elapsedNanos\":%d,"
+				+ "\"allocatedBytes\":%d}",
+				escape(ai), colour, round, escape(move), depth, threads, nodes, cutoffs,
+				tableProbes, tableHits, tableCutoffs, generationNanos, evaluationNanos,
+				elapsedNanos, allocatedBytes);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	@Override
+	public String toString() {
+		double seconds = elapsedNanos / 1e9;
+		return String.format(Locale.ROOT, "%s, %s round %d: %s%n"
+				+ "depth %d on %d thread(s), %,d nodes (%,.0f/s), %,d cut-offs%n"
+				+ "table: %,d probes, %,d hits, %,d cut-offs%n"
+				+ "time: %.3fs, generation %.3fs, evaluation %.3fs%n"
+				+ "allocated: %s",
+				ai, colour, round, move, depth, threads, nodes,
+				seconds > 0 ? nodes / seconds : 0.0, cutoffs, tableProbes, tableHits,
+				tableCutoffs, seconds, generationNanos / 1e9, evaluationNanos / 1e9,
+				allocatedBytes < 0 ? "unknown" : String.format(Locale.ROOT, "%,d bytes",
+						allocatedBytes));
+	}
+
+}
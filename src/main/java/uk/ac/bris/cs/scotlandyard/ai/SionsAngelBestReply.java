@@ -0,0 +1,11 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+// Sions Angel only searching the single most dangerous detective reply each round
+@ManagedAI(value = "Sions Angel (Best Reply)", visualiserType = ManagedAI.VisualiserType.MAP_OVERLAP)
+public class SionsAngelBestReply extends SionsAngel {
+
+    public SionsAngelBestReply() {
+        super(MrXSearch.Mode.BEST_REPLY);
+    }
+
+}
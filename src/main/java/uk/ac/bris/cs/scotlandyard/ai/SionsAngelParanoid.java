@@ -0,0 +1,11 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+// Sions Angel searching each detective's reply in its own ply, in turn order
+@ManagedAI(value = "Sions Angel (Paranoid)", visualiserType = ManagedAI.VisualiserType.MAP_OVERLAP)
+public class SionsAngelParanoid extends SionsAngel {
+
+    public SionsAngelParanoid() {
+        super(MrXSearch.Mode.PARANOID);
+    }
+
+}
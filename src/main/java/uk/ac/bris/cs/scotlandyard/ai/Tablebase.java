@@ -0,0 +1,318 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static uk.ac.bris.cs.scotlandyard.ai.GameState.MRX;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.NeighbourMasks;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Exact results for the last rounds of games with one or two detectives,
+ * written by {@link TablebaseGenerator} and memory-mapped for reading. <br>
+ * Layer {@code k} holds, for every placement of Mr.X and the detectives with
+ * Mr.X to move and {@code k} rounds left, whether Mr.X survives to the end
+ * with best play on both sides. Layer 0 is all survivals; layer {@code k} is
+ * worked out backwards from layer {@code k - 1} without any search, so the
+ * table answers in one lookup what minimax would need {@code 2k} plies for.
+ * <br>
+ * The table solves a simplified game, under these assumptions:
+ * <ul>
+ * <li>The detectives always know where Mr.X is, not only on reveal
+ * rounds.</li>
+ * <li>Nobody runs out of tickets: Mr.X may take any edge, boats included,
+ * and detectives any taxi, bus or underground edge.</li>
+ * <li>Mr.X only makes single moves.</li>
+ * <li>A detective with nowhere to go stays put; the game does not end early
+ * because every detective is stuck. With at most two detectives that needs
+ * two neighbouring dead ends, which the standard map does not have.</li>
+ * </ul>
+ * Knowing more, or having more options, never hurts the side that gets
+ * them. The detectives get more than the real game gives them, Mr.X less, so
+ * when Mr.X survives in the table he also survives in the real game, as long
+ * as he can pay for every move: {@link #probe(GameState)} reports that as
+ * {@link #MRX_WINS} when he holds a secret ticket for every remaining round
+ * and a taxi, a bus and an underground ticket. A secret ticket alone only
+ * pays for a boat; on any other edge it stands in for a ticket Mr.X must also
+ * hold, but does not spend, so one of each lasts him to the end.
+ * A detective win in the table is not reported, it only holds while Mr.X is
+ * in plain sight and he may well get away by hiding. Such positions, and
+ * positions the table does not cover, are {@link #UNKNOWN}; searches that
+ * stop on a probe result therefore only ever end early as Mr.X wins. <br>
+ * Sets of Mr.X locations are stored as {@link NeighbourMasks} node sets, one
+ * per ordered placement of the detectives, so a probe reads one long. File
+ * layout, big-endian: magic {@code "SYTB"}, version, node count, words per
+ * set, detectives, layers, a fingerprint of the map, then every layer in
+ * order.
+ */
+final class Tablebase {
+
+	/**
+	 * The system property naming the tablebase file
+	 */
+	static final String PROPERTY = "scotlandyard.tablebase";
+
+	/**
+	 * Largest number of detectives a tablebase can be built for
+	 */
+	static final int MAX_DETECTIVES = 2;
+
+	private static final Ticket[] TRANSPORT_TICKETS = { Ticket.Taxi, Ticket.Bus,
+			Ticket.Underground };
+
+	static final int UNKNOWN = 0;
+	static final int MRX_WINS = 1;
+
+	/**
+	 * Destination returned by {@link #escape(GameState)} when there is none
+	 */
+	static final int MISSING = -1;
+
+	static final int MAGIC = 0x53595442; // "SYTB"
+	static final int VERSION = 1;
+	static final int HEADER = 32;
+
+	private final ByteBuffer data;
+	private final int nodes;
+	private final int words;
+	private final int detectives;
+	private final int layers;
+	private final long layerLongs;
+	private final NeighbourMasks<Transport> masks;
+	private final int detectiveKinds;
+
+	private Tablebase(ByteBuffer data, int nodes, int words, int detectives, int layers,
+			NeighbourMasks<Transport> masks) {
+		this.data = data;
+		this.nodes = nodes;
+		this.words = words;
+		this.detectives = detectives;
+		this.layers = layers;
+		this.layerLongs = placements(nodes, detectives) * words;
+		this.masks = masks;
+		this.detectiveKinds = detectiveKinds(masks);
+	}
+
+	/**
+	 * @param graph the map the game is played on; not null
+	 * @return the tablebase named by the {@code scotlandyard.tablebase}
+	 *         property, or null if it is not set
+	 * @throws UncheckedIOException if the tablebase cannot be read or was built
+	 *         for another map
+	 */
+	static Tablebase fromProperty(Graph<Integer, Transport> graph) {
+		String path = System.getProperty(PROPERTY);
+		if (path == null) return null;
+		try {
+			return load(Paths.get(path), graph);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read tablebase " + path, e);
+		}
+	}
+
+	/**
+	 * Maps a tablebase file into memory
+	 *
+	 * @param path the file; not null
+	 * @param graph the map the game is played on; not null
+	 * @return the tablebase; never null
+	 * @throws IOException if the file cannot be read, is not a tablebase or
+	 *         was built for another map
+	 */
+	static Tablebase load(Path path, Graph<Integer, Transport> graph) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER || buffer.getInt(0) != MAGIC)
+				throw new IOException(path + " is not a tablebase");
+			if (buffer.getInt(4) != VERSION)
+				throw new IOException("Unsupported tablebase version " + buffer.getInt(4));
+			int nodes = buffer.getInt(8);
+			int words = buffer.getInt(12);
+			int detectives = buffer.getInt(16);
+			int layers = buffer.getInt(20);
+			if (buffer.getLong(24) != fingerprint(graph))
+				throw new IOException(path + " was built for another map");
+			NeighbourMasks<Transport> masks = NeighbourMasks.of(graph, Transport.class);
+			if (masks.size() != nodes || masks.words() != words || detectives < 1
+					|| detectives > MAX_DETECTIVES || layers < 1
+					|| buffer.remaining() != HEADER + layers * placements(nodes, detectives)
+							* words * Long.BYTES)
+				throw new IOException(path + " is truncated or corrupt");
+			return new Tablebase(buffer, nodes, words, detectives, layers, masks);
+		}
+	}
+
+	/**
+	 * @param nodes one more than the largest node value
+	 * @param detectives number of detectives
+	 * @return number of ordered placements of the detectives, including
+	 *         impossible ones
+	 */
+	static long placements(int nodes, int detectives) {
+		long placements = 1;
+		for (int i = 0; i < detectives; i++) placements *= nodes;
+		return placements;
+	}
+
+	/**
+	 * @param masks the map's masks; not null
+	 * @return the kind mask of the edges detectives may take
+	 */
+	static int detectiveKinds(NeighbourMasks<Transport> masks) {
+		return masks.allKinds() & ~masks.kind(Transport.Boat);
+	}
+
+	/**
+	 * @param graph the map; not null
+	 * @return a hash of the map's edges that does not depend on their order
+	 */
+	static long fingerprint(Graph<Integer, Transport> graph) {
+		long fingerprint = graph.getNodes().size();
+		for (Edge<Integer, Transport> edge : graph.getEdges()) {
+			long z = (long) edge.source().value() << 36 ^ (long) edge.destination().value() << 8
+					^ edge.data().ordinal();
+			z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+			fingerprint += z ^ z >>> 31;
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * @return number of detectives the table covers
+	 */
+	int detectives() {
+		return detectives;
+	}
+
+	/**
+	 * @return the most rounds left the table covers
+	 */
+	int rounds() {
+		return layers - 1;
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return {@link #MRX_WINS} if Mr.X can make sure he wins from the state,
+	 *         whatever the detectives know, otherwise {@link #UNKNOWN}; only
+	 *         states with Mr.X to move are covered
+	 */
+	int probe(GameState state) {
+		int left = covered(state);
+		if (left < 0 || !mrXCanPay(state, left)) return UNKNOWN;
+		return survives(left, state.location(MRX), placement(state, null)) ? MRX_WINS : UNKNOWN;
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return a destination for a single Mr.X move that keeps him safe to the
+	 *         end if {@link #probe(GameState)} says he wins, otherwise
+	 *         {@link #MISSING}
+	 */
+	int escape(GameState state) {
+		if (probe(state) != MRX_WINS) return MISSING;
+		int left = covered(state);
+		int[] detectives = new int[this.detectives];
+		placement(state, detectives);
+		long[] occupied = masks.newSet();
+		for (int detective : detectives) occupied[detective >>> 6] |= 1L << detective;
+		long[] options = masks.newSet();
+		masks.neighbours(state.location(MRX), masks.allKinds(), options);
+		for (int word = 0; word < words; word++) {
+			for (long bits = options[word] & ~occupied[word]; bits != 0; bits &= bits - 1) {
+				int destination = word << 6 | Long.numberOfTrailingZeros(bits);
+				if (safe(left, destination, detectives, occupied)) return destination;
+			}
+		}
+		return MISSING;
+	}
+
+	// Whether Mr.X at the destination survives every reply of the detectives
+	private boolean safe(int left, int destination, int[] detectives, long[] occupied) {
+		for (int detective : detectives)
+			if (masks.isNeighbour(detective, destination, detectiveKinds)) return false;
+		return safeReplies(left - 1, destination, detectives.clone(), 0, occupied);
+	}
+
+	// Detectives move in turn, each one avoiding where the others are at that moment
+	private boolean safeReplies(int left, int mrX, int[] detectives, int next, long[] occupied) {
+		if (next == detectives.length)
+			return survives(left, mrX, index(detectives));
+		int from = detectives[next];
+		long[] options = masks.newSet();
+		masks.neighbours(from, detectiveKinds, options);
+		occupied[from >>> 6] &= ~(1L << from);
+		boolean moved = false;
+		boolean safe = true;
+		for (int word = 0; word < words && safe; word++) {
+			for (long bits = options[word] & ~occupied[word]; bits != 0 && safe; bits &= bits - 1) {
+				int to = word << 6 | Long.numberOfTrailingZeros(bits);
+				moved = true;
+				detectives[next] = to;
+				occupied[to >>> 6] |= 1L << to;
+				safe = safeReplies(left, mrX, detectives, next + 1, occupied);
+				occupied[to >>> 6] &= ~(1L << to);
+			}
+		}
+		detectives[next] = from;
+		occupied[from >>> 6] |= 1L << from;
+		if (!moved) safe = safeReplies(left, mrX, detectives, next + 1, occupied);
+		return safe;
+	}
+
+	// Rounds left if the table covers the state, otherwise -1
+	private int covered(GameState state) {
+		if (state.currentPlayer() != MRX || state.isGameOver()) return -1;
+		if (state.players() - 1 != detectives) return -1;
+		int left = state.totalRounds() - state.round();
+		if (left < 1 || left >= layers) return -1;
+		for (int player = 0; player < state.players(); player++)
+			if (state.location(player) < 0 || state.location(player) >= nodes) return -1;
+		return left;
+	}
+
+	private long placement(GameState state, int[] into) {
+		long index = 0;
+		for (int detective = 1; detective < state.players(); detective++) {
+			index = index * nodes + state.location(detective);
+			if (into != null) into[detective - 1] = state.location(detective);
+		}
+		return index;
+	}
+
+	private long index(int[] detectives) {
+		long index = 0;
+		for (int detective : detectives) index = index * nodes + detective;
+		return index;
+	}
+
+	private boolean survives(int left, int mrX, long placement) {
+		long word = left * layerLongs + placement * words + (mrX >>> 6);
+		return (data.getLong(HEADER + (int) (word * Long.BYTES)) & 1L << mrX) != 0;
+	}
+
+	// Mr.X can make any move every remaining round by paying each with a secret ticket
+	private static boolean mrXCanPay(GameState state, int left) {
+		if (state.tickets(MRX, Ticket.Secret) < left) return false;
+		for (Ticket ticket : TRANSPORT_TICKETS)
+			if (state.tickets(MRX, ticket) == 0) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Tablebase{" + "detectives=" + detectives + ", rounds=" + rounds() + '}';
+	}
+
+}
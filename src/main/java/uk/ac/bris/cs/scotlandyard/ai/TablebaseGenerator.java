@@ -0,0 +1,230 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.NeighbourMasks;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Offline tool that writes a {@link Tablebase} for the standard map by
+ * retrograde analysis. <br>
+ * With no rounds left Mr.X has survived wherever he is. With {@code k} rounds
+ * left, Mr.X at {@code x} survives against detectives at {@code D} if he can
+ * move to a free neighbour {@code x'} that no detective can move onto, and
+ * from which he survives {@code k - 1} rounds against every way the
+ * detectives can move on from {@code D}. For each detective placement the
+ * second part is one AND of the previous layer's Mr.X sets per reply and the
+ * first is a single {@link NeighbourMasks#step(long[], int, long[], long[])},
+ * so each layer costs the number of placements times the number of replies
+ * in word operations. <br>
+ * Usage:
+ *
+ * <pre>
+ * mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.ai.TablebaseGenerator \
+ *     -Dexec.args="--out endgame.tb --detectives 2 --rounds 24"
+ * </pre>
+ *
+ * Options are {@code --out} (required), {@code --detectives} (1 or 2, default
+ * 2) and {@code --rounds} for the most rounds left to cover (default 6). Two
+ * detectives on the standard map take 1.3 MB per round. Play with the table
+ * by passing {@code -Dscotlandyard.tablebase=endgame.tb} to the game.
+ */
+public final class TablebaseGenerator {
+
+	private final NeighbourMasks<Transport> masks;
+	private final int nodes;
+	private final int words;
+	private final int detectives;
+	private final int[][] moves; // Distinct detective destinations from each node
+	private final long[] graphNodes;
+
+	private TablebaseGenerator(Graph<Integer, Transport> graph, int detectives) {
+		this.masks = NeighbourMasks.of(graph, Transport.class);
+		this.nodes = masks.size();
+		this.words = masks.words();
+		this.detectives = detectives;
+		this.moves = new int[nodes][];
+		this.graphNodes = masks.newSet();
+		int kinds = Tablebase.detectiveKinds(masks);
+		long[] neighbours = masks.newSet();
+		for (Node<Integer> node : graph.getNodes()) {
+			int value = node.value();
+			graphNodes[value >>> 6] |= 1L << value;
+			Arrays.fill(neighbours, 0);
+			masks.neighbours(value, kinds, neighbours);
+			moves[value] = members(neighbours);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		String out = options.get("out");
+		if (out == null) throw new IllegalArgumentException("--out is required");
+		int detectives = Integer.parseInt(options.getOrDefault("detectives", "2"));
+		int rounds = Integer.parseInt(options.getOrDefault("rounds", "6"));
+		write(StandardGame.standardGraph(), detectives, rounds, Paths.get(out));
+	}
+
+	/**
+	 * Writes a tablebase file for a map
+	 *
+	 * @param graph the map; not null, every node value must be non-negative
+	 * @param detectives the number of detectives, 1 to
+	 *        {@link Tablebase#MAX_DETECTIVES}
+	 * @param rounds the most rounds left to cover, at least 1
+	 * @param out the file to write, replaced if it exists; not null
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(Graph<Integer, Transport> graph, int detectives, int rounds, Path out)
+			throws IOException {
+		if (detectives < 1 || detectives > Tablebase.MAX_DETECTIVES)
+			throw new IllegalArgumentException("Detectives must be between 1 and "
+					+ Tablebase.MAX_DETECTIVES + ", got " + detectives);
+		if (rounds < 1) throw new IllegalArgumentException("Need at least one round");
+		new TablebaseGenerator(graph, detectives).write(graph, rounds, out);
+	}
+
+	private void write(Graph<Integer, Transport> graph, int rounds, Path out)
+			throws IOException {
+		long placements = Tablebase.placements(nodes, detectives);
+		if (placements * words * (rounds + 1) * Long.BYTES > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Tablebase would be too large to map");
+		int size = (int) (placements * words);
+		int count = (int) placements;
+		try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER);
+			header.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(nodes).putInt(words)
+					.putInt(detectives).putInt(rounds + 1).putLong(Tablebase.fingerprint(graph));
+			header.flip();
+			channel.write(header);
+
+			long[] previous = new long[size];
+			int[] placement = new int[detectives];
+			for (int index = 0; index < count; index++) {
+				if (!decode(index, placement)) continue;
+				long[] occupied = occupied(placement);
+				int offset = index * words;
+				for (int word = 0; word < words; word++)
+					previous[offset + word] = graphNodes[word] & ~occupied[word];
+			}
+			writeLayer(channel, previous);
+			long[] current = new long[size];
+			long[] safe = masks.newSet();
+			long[] escapes = masks.newSet();
+			for (int left = 1; left <= rounds; left++) {
+				Arrays.fill(current, 0);
+				long survivals = 0;
+				for (int index = 0; index < count; index++) {
+					if (!decode(index, placement)) continue;
+					long[] occupied = occupied(placement);
+					safe(previous, placement, occupied, safe);
+					masks.step(safe, masks.allKinds(), occupied, escapes);
+					System.arraycopy(escapes, 0, current, index * words, words);
+					for (long bits : escapes) survivals += Long.bitCount(bits);
+				}
+				writeLayer(channel, current);
+				System.err.printf("%d rounds left: Mr.X survives %d positions%n", left, survivals);
+				long[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+		}
+	}
+
+	// Where Mr.X can stand after his move and survive every reply of the detectives
+	private void safe(long[] previous, int[] placement, long[] occupied, long[] into) {
+		for (int word = 0; word < words; word++)
+			into[word] = graphNodes[word] & ~occupied[word];
+		for (int detective : placement)
+			for (int to : moves[detective])
+				into[to >>> 6] &= ~(1L << to); // Caught
+		replies(previous, placement.clone(), 0, occupied.clone(), into);
+	}
+
+	// Detectives move in turn, each one avoiding where the others are at that moment
+	private void replies(long[] previous, int[] placement, int next, long[] occupied,
+			long[] into) {
+		if (next == placement.length) {
+			int offset = index(placement) * words;
+			for (int word = 0; word < words; word++) into[word] &= previous[offset + word];
+			return;
+		}
+		int from = placement[next];
+		occupied[from >>> 6] &= ~(1L << from);
+		boolean moved = false;
+		for (int to : moves[from]) {
+			if ((occupied[to >>> 6] & 1L << to) != 0) continue;
+			moved = true;
+			placement[next] = to;
+			occupied[to >>> 6] |= 1L << to;
+			replies(previous, placement, next + 1, occupied, into);
+			occupied[to >>> 6] &= ~(1L << to);
+		}
+		placement[next] = from;
+		occupied[from >>> 6] |= 1L << from;
+		if (!moved) replies(previous, placement, next + 1, occupied, into);
+	}
+
+	private void writeLayer(FileChannel channel, long[] layer) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(layer.length * Long.BYTES);
+		buffer.asLongBuffer().put(layer);
+		while (buffer.hasRemaining()) channel.write(buffer);
+	}
+
+	// The detectives' locations, false if the placement is not possible
+	private boolean decode(int index, int[] into) {
+		for (int detective = detectives - 1; detective >= 0; detective--) {
+			into[detective] = index % nodes;
+			index /= nodes;
+			if ((graphNodes[into[detective] >>> 6] & 1L << into[detective]) == 0) return false;
+			for (int other = detective + 1; other < detectives; other++)
+				if (into[other] == into[detective]) return false;
+		}
+		return true;
+	}
+
+	private int index(int[] placement) {
+		int index = 0;
+		for (int location : placement) index = index * nodes + location;
+		return index;
+	}
+
+	private long[] occupied(int[] placement) {
+		long[] occupied = masks.newSet();
+		for (int location : placement) occupied[location >>> 6] |= 1L << location;
+		return occupied;
+	}
+
+	private static int[] members(long[] set) {
+		int[] members = new int[count(set)];
+		int i = 0;
+		for (int word = 0; word < set.length; word++)
+			for (long bits = set[word]; bits != 0; bits &= bits - 1)
+				members[i++] = word << 6 | Long.numberOfTrailingZeros(bits);
+		return members;
+	}
+
+	private static int count(long[] set) {
+		int count = 0;
+		for (long bits : set) count += Long.bitCount(bits);
+		return count;
+	}
+
+}
@@ -0,0 +1,141 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+
+/**
+ * Reports {@link SearchStats} for each move an AI makes, as text on its
+ * {@link Visualiser} and as one JSON object per line in a log file. <br>
+ * The text is shown whenever the AI has a visualiser to draw on. The log is
+ * only written when the {@code scotlandyard.telemetry} system property names
+ * the file, for example
+ * {@code -Dscotlandyard.telemetry=target/telemetry.jsonl}; the file is
+ * appended to and shared by every AI in the JVM. <br>
+ * Without a JavaFX toolkit, as in headless games, nothing is shown after the
+ * first move, so with no log either there is nowhere to report to; AIs
+ * should not count anything then, see {@link #isRecording()}.
+ */
+public final class Telemetry {
+
+	/**
+	 * The system property naming the log file
+	 */
+	public static final String PROPERTY = "scotlandyard.telemetry";
+
+	private static final String PATH = System.getProperty(PROPERTY);
+	private static final Object LOCK = new Object();
+	private static Writer log; // Opened on first use, guarded by LOCK
+	private static boolean failed; // The log could not be written, guarded by LOCK
+
+	private final String ai;
+	private volatile Visualiser visualiser; // Null once there is no toolkit to draw with
+	private Label label; // Only touched on the JavaFX thread
+
+	private Telemetry(String ai, Visualiser visualiser) {
+		this.ai = ai;
+		this.visualiser = visualiser;
+	}
+
+	/**
+	 * @param ai name of the AI, as in {@link ManagedAI#value()}; not null
+	 * @param visualiser where to show the latest stats, or null to only log
+	 *        them
+	 * @return telemetry for one game of the AI; never null
+	 */
+	public static Telemetry create(String ai, Visualiser visualiser) {
+		return new Telemetry(Objects.requireNonNull(ai), visualiser);
+	}
+
+	/**
+	 * @return true if the {@code scotlandyard.telemetry} property is set
+	 */
+	public static boolean isEnabled() {
+		return PATH != null;
+	}
+
+	/**
+	 * @return true if {@link #record(SearchStats)} has somewhere to report
+	 *         to, the log or the visualiser
+	 */
+	public boolean isRecording() {
+		return isEnabled() || visualiser != null;
+	}
+
+	/**
+	 * @return name of the AI
+	 */
+	public String ai() {
+		return ai;
+	}
+
+	/**
+	 * Logs the stats if the log is enabled and shows them on the visualiser
+	 * if there is one
+	 *
+	 * @param stats the stats of one move; not null
+	 */
+	public void record(SearchStats stats) {
+		Objects.requireNonNull(stats);
+		if (isEnabled()) write(stats.toJson());
+		show(stats.toString());
+	}
+
+	/**
+	 * @return bytes allocated so far by the calling thread, or -1 if the JVM
+	 *         cannot tell
+	 */
+	public static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void write(String line) {
+		synchronized (LOCK) {
+			if (failed) return;
+			try {
+				if (log == null) log = Files.newBufferedWriter(Paths.get(PATH),
+						StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+				log.write(line);
+				log.write(System.lineSeparator());
+				log.flush();
+			} catch (IOException e) {
+				// Telemetry must never cost a move, give up on the log instead
+				failed = true;
+				System.err.println("Unable to write telemetry to " + PATH + ": " + e);
+			}
+		}
+	}
+
+	private void show(String text) {
+		Visualiser visualiser = this.visualiser;
+		if (visualiser == null) return;
+		try {
+			Platform.runLater(() -> {
+				if (label == null) {
+					label = new Label();
+					label.setStyle("-fx-background-color: rgba(255, 255, 255, 0.8);"
+							+ " -fx-padding: 8; -fx-font-family: monospace;");
+					visualiser.surface().getChildren().add(label);
+				}
+				label.setText(text);
+			});
+		} catch (IllegalStateException e) {
+			this.visualiser = null; // No JavaFX toolkit running
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+/**
+ * Fixed size hash table of search results keyed by {@link GameState#hash()}.
+ * <br>
+ * Each slot holds one position: its score, whether the score is exact or only
+ * a bound, the depth it was searched to and the best move found. A slot is
+ * replaced when the new result was searched at least as deep, or when the old
+ * one is from an earlier search; results from earlier searches are still used
+ * until then, so the table is meant to be kept for the whole game. <br>
+ * Entries are stored in parallel primitive arrays so the table allocates
+ * nothing after construction. <br>
+ * The table can be shared between threads without locking: a slot's key is
+ * stored XORed with its move and data, so a slot torn by two threads writing
+ * at once no longer matches any key and reads as missing. An entry is read
+ * as a single int by {@link #probe(long)} so its fields always belong
+ * together.
+ */
+final class TranspositionTable {
+
+	static final int EXACT = 1;
+	static final int LOWER = 2; // The score is at least this
+	static final int UPPER = 3; // The score is at most this
+
+	/**
+	 * Entry returned by {@link #probe(long)} when the position is not stored
+	 */
+	static final int MISSING = 0;
+
+	private static final int DEFAULT_BITS = 20; // 1M slots, 20 bytes each
+	private static final int BOUND_MASK = 0x3;
+	private static final int DEPTH_MASK = 0x3F;
+	private static final int GENERATION_MASK = 0xFF;
+
+	private final int mask;
+	private final long[] keys;
+	private final long[] moves;
+	private final int[] data; // score << 16 | generation << 8 | depth << 2 | bound
+	private volatile int generation;
+
+	TranspositionTable() {
+		this(DEFAULT_BITS);
+	}
+
+	/**
+	 * @param bits the table holds 2^bits positions
+	 */
+	TranspositionTable(int bits) {
+		if (bits < 1 || bits > 28) throw new IllegalArgumentException("Bad size " + bits);
+		int size = 1 << bits;
+		mask = size - 1;
+		keys = new long[size];
+		moves = new long[size];
+		data = new int[size];
+	}
+
+	/**
+	 * Marks the start of a new search, entries stored from now on are kept in
+	 * preference to older ones
+	 */
+	void nextGeneration() {
+		generation = generation % GENERATION_MASK + 1; // 0 is reserved for empty slots
+	}
+
+	/**
+	 * @param key the position hash
+	 * @return the stored entry, to be read with {@link #score(int)},
+	 *         {@link #depth(int)} and {@link #bound(int)}, or {@link #MISSING}
+	 */
+	int probe(long key) {
+		int index = (int) key & mask;
+		int entry = data[index];
+		return entry != MISSING && (keys[index] ^ moves[index] ^ entry) == key ? entry : MISSING;
+	}
+
+	/**
+	 * @param key the position hash
+	 * @return the stored best move or {@link PackedMove#PASS} if the position
+	 *         is not stored
+	 */
+	long move(long key) {
+		int index = (int) key & mask;
+		long move = moves[index];
+		int entry = data[index];
+		return entry != MISSING && (keys[index] ^ move ^ entry) == key ? move : PackedMove.PASS;
+	}
+
+	int score(int entry) {
+		return entry >> 16;
+	}
+
+	int depth(int entry) {
+		return (entry >>> 2) & DEPTH_MASK;
+	}
+
+	int bound(int entry) {
+		return entry & BOUND_MASK;
+	}
+
+	/**
+	 * Stores a search result, unless the slot holds a deeper result of the
+	 * current search
+	 *
+	 * @param key the position hash
+	 * @param depth the depth searched
+	 * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+	 * @param score the score
+	 * @param move the best packed move, or {@link PackedMove#PASS} if unknown
+	 */
+	void store(long key, int depth, int bound, int score, long move) {
+		int index = (int) key & mask;
+		int old = data[index];
+		if (old != 0 && ((old >>> 8) & GENERATION_MASK) == generation
+				&& ((old >>> 2) & DEPTH_MASK) > depth)
+			return;
+		int clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score));
+		int entry = clamped << 16 | generation << 8 | Math.min(depth, DEPTH_MASK) << 2 | bound;
+		keys[index] = key ^ move ^ entry;
+		moves[index] = move;
+		data[index] = entry;
+	}
+
+}
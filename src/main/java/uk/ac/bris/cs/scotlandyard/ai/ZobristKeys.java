@@ -0,0 +1,106 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * Random keys for Zobrist hashing {@link GameState}s. <br>
+ * A position's hash is the XOR of one key per (player, location), one per
+ * (player, ticket, count), one for the round and one for the player to move,
+ * so playing a move only needs the keys of what it changed. <br>
+ * Keys are generated from a fixed seed and never change, so one instance can
+ * be shared between threads and reused for every turn of a game: the same
+ * position always hashes to the same value.
+ */
+public final class ZobristKeys {
+
+	private static final int TICKETS = Ticket.values().length;
+	private static final long SEED = 0x5C07_1A2D_FA11_0001L;
+
+	private final int players;
+	private final int nodes;
+	private final int counts;
+	private final int rounds;
+	private final long[] locationKeys;
+	private final long[] ticketKeys;
+	private final long[] roundKeys;
+	private final long[] playerKeys;
+
+	private ZobristKeys(int players, int nodes, int counts, int rounds) {
+		this.players = players;
+		this.nodes = nodes;
+		this.counts = counts;
+		this.rounds = rounds;
+		SplittableRandom random = new SplittableRandom(SEED);
+		locationKeys = keys(random, players * nodes);
+		ticketKeys = keys(random, players * TICKETS * counts);
+		roundKeys = keys(random, rounds);
+		playerKeys = keys(random, players);
+	}
+
+	private static long[] keys(SplittableRandom random, int size) {
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = random.nextLong();
+		return keys;
+	}
+
+	/**
+	 * Creates keys big enough for the given state and every state that can be
+	 * played from it. <br>
+	 * Tickets only move between players or get used up, so no player can ever
+	 * hold more of a ticket than all players hold together now.
+	 *
+	 * @param state the state; not null
+	 * @return the keys; never null
+	 */
+	public static ZobristKeys of(GameState state) {
+		Objects.requireNonNull(state);
+		int counts = 0;
+		for (Ticket ticket : Ticket.values()) {
+			int total = 0;
+			for (int player = 0; player < state.players(); player++)
+				total += state.tickets(player, ticket);
+			counts = Math.max(counts, total);
+		}
+		return new ZobristKeys(state.players(), state.nodes(), counts + 1,
+				state.totalRounds() + 1);
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return true if every position reachable from the state can be hashed
+	 *         with these keys
+	 */
+	public boolean fits(GameState state) {
+		if (state.players() != players || state.nodes() > nodes
+				|| state.totalRounds() + 1 > rounds)
+			return false;
+		for (Ticket ticket : Ticket.values()) {
+			int total = 0;
+			for (int player = 0; player < players; player++)
+				total += state.tickets(player, ticket);
+			if (total >= counts) return false;
+		}
+		return true;
+	}
+
+	long location(int player, int node) {
+		return locationKeys[player * nodes + node];
+	}
+
+	long tickets(int player, int ticket, int count) {
+		return ticketKeys[(player * TICKETS + ticket) * counts + count];
+	}
+
+	long round(int round) {
+		return roundKeys[round];
+	}
+
+	long player(int player) {
+		return playerKeys[player];
+	}
+
+}
@@ -0,0 +1,290 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+
+/**
+ * A Scotland Yard map in a binary file that is read without parsing, written
+ * by {@link MapCompiler} from the text {@code graph.txt} and {@code pos.txt}.
+ * <br>
+ * The format is for maps kept outside the game, such as those from
+ * {@link MapGenerator}, and is only read from a file named by
+ * {@link StandardGame#MAP_PROPERTY}; the standard map is always read from the
+ * text resources. A file is memory-mapped by {@link #load(Path)} and the
+ * adjacency is read straight from the mapping in compressed sparse row form: the edges from node {@code n} are the indices
+ * {@code start(n)} (inclusive) to {@code end(n)} (exclusive) into
+ * {@link #target(int)} and {@link #transport(int)}, with both directions of
+ * every edge present in the order the graph lists them. {@link #toGraph()}
+ * builds the same {@link Graph} that
+ * {@link ScotlandYardGraphReader#fromLines(List)} gives for the text map, in
+ * the same node and edge order; the game plays on that graph, so the
+ * compiled map saves parsing text but not building the graph. <br>
+ * File layout, big-endian: magic {@code "SYMP"}, version, node count, edge
+ * count, one more than the largest node value, row entry count, position
+ * count; then the node values, the edge sources, the edge destinations, the
+ * row offsets, the row targets and the positions as (node, x, y), all ints;
+ * then the edge transports and the row transports as {@link Transport}
+ * ordinals, one byte each.
+ */
+public final class CompiledMap {
+
+	private static final int MAGIC = 0x53594D50; // "SYMP"
+	private static final int VERSION = 1;
+	private static final int HEADER = 28;
+	private static final Transport[] TRANSPORTS = Transport.values();
+
+	private final ByteBuffer buffer;
+	private final int nodes;
+	private final int edges;
+	private final int size;
+	private final int rows;
+	private final int positions;
+	private final int nodesAt;
+	private final int sourcesAt;
+	private final int destinationsAt;
+	private final int offsetsAt;
+	private final int targetsAt;
+	private final int positionsAt;
+	private final int edgeTransportsAt;
+	private final int transportsAt;
+
+	private CompiledMap(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a compiled map");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported compiled map version " + buffer.getInt(4));
+		this.buffer = buffer;
+		this.nodes = buffer.getInt(8);
+		this.edges = buffer.getInt(12);
+		this.size = buffer.getInt(16);
+		this.rows = buffer.getInt(20);
+		this.positions = buffer.getInt(24);
+		if (nodes < 0 || edges < 0 || size < 0 || rows < 0 || positions < 0)
+			throw new IOException("Compiled map is corrupt");
+		this.nodesAt = HEADER;
+		this.sourcesAt = nodesAt + nodes * Integer.BYTES;
+		this.destinationsAt = sourcesAt + edges * Integer.BYTES;
+		this.offsetsAt = destinationsAt + edges * Integer.BYTES;
+		this.targetsAt = offsetsAt + (size + 1) * Integer.BYTES;
+		this.positionsAt = targetsAt + rows * Integer.BYTES;
+		this.edgeTransportsAt = positionsAt + 3 * positions * Integer.BYTES;
+		this.transportsAt = edgeTransportsAt + edges;
+		if (buffer.limit() != (long) transportsAt + rows)
+			throw new IOException("Compiled map is truncated or corrupt");
+	}
+
+	/**
+	 * Maps a compiled map file into memory
+	 *
+	 * @param path the file; not null
+	 * @return the map; never null
+	 * @throws IOException if the file cannot be read or is not a compiled map
+	 */
+	public static CompiledMap load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new CompiledMap(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Writes a compiled map file
+	 *
+	 * @param path the file to write, replaced if it exists; not null
+	 * @param graph the map; not null, must be undirected, listing each edge in
+	 *        both directions as {@link ScotlandYardGraphReader} gives, and
+	 *        every node value must be non-negative
+	 * @param positions the map coordinates of each node as (x, y), as given in
+	 *        {@code pos.txt}; not null, may be empty
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path path, Graph<Integer, Transport> graph,
+			Map<Integer, Entry<Integer, Integer>> positions) throws IOException {
+		List<Node<Integer>> nodes = graph.getNodes();
+		int size = 0;
+		for (Node<Integer> node : nodes) {
+			if (node.value() < 0) throw new IllegalArgumentException(
+					"Node values must not be negative, got " + node);
+			size = Math.max(size, node.value() + 1);
+		}
+
+		// Each edge once, leaving out the reverse the graph lists with it
+		List<Edge<Integer, Transport>> edges = new ArrayList<>();
+		Map<List<Object>, Integer> reverses = new HashMap<>();
+		for (Edge<Integer, Transport> edge : graph.getEdges()) {
+			List<Object> key = Arrays.asList(edge.source().value(),
+					edge.destination().value(), edge.data());
+			Integer pending = reverses.get(key);
+			if (pending != null) {
+				if (pending == 1) reverses.remove(key);
+				else reverses.put(key, pending - 1);
+				continue;
+			}
+			edges.add(edge);
+			reverses.merge(Arrays.asList(edge.destination().value(), edge.source().value(),
+					edge.data()), 1, Integer::sum);
+		}
+		if (!reverses.isEmpty()) throw new IllegalArgumentException(
+				"Graph is not undirected, missing reverse of " + reverses.keySet());
+
+		int[] offsets = new int[size + 1];
+		for (Node<Integer> node : nodes)
+			offsets[node.value() + 1] = graph.getEdgesFrom(node).size();
+		for (int node = 0; node < size; node++)
+			offsets[node + 1] += offsets[node];
+		int[] targets = new int[offsets[size]];
+		byte[] transports = new byte[offsets[size]];
+		for (Node<Integer> node : nodes) {
+			int row = offsets[node.value()];
+			for (Edge<Integer, Transport> edge : graph.getEdgesFrom(node)) {
+				targets[row] = edge.destination().value();
+				transports[row++] = (byte) edge.data().ordinal();
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nodes.size());
+			out.writeInt(edges.size());
+			out.writeInt(size);
+			out.writeInt(targets.length);
+			out.writeInt(positions.size());
+			for (Node<Integer> node : nodes)
+				out.writeInt(node.value());
+			for (Edge<Integer, Transport> edge : edges)
+				out.writeInt(edge.source().value());
+			for (Edge<Integer, Transport> edge : edges)
+				out.writeInt(edge.destination().value());
+			for (int offset : offsets)
+				out.writeInt(offset);
+			for (int target : targets)
+				out.writeInt(target);
+			for (Entry<Integer, Entry<Integer, Integer>> position : positions.entrySet()) {
+				out.writeInt(position.getKey());
+				out.writeInt(position.getValue().getKey());
+				out.writeInt(position.getValue().getValue());
+			}
+			for (Edge<Integer, Transport> edge : edges)
+				out.writeByte(edge.data().ordinal());
+			out.write(transports);
+		}
+	}
+
+	/**
+	 * @return number of nodes
+	 */
+	public int nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return number of edges, counting each undirected edge once
+	 */
+	public int edges() {
+		return edges;
+	}
+
+	/**
+	 * @return one more than the largest node value; every node value is below
+	 *         this
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param node the node value, must be below {@link #size()}
+	 * @return index of the first edge from the node
+	 */
+	public int start(int node) {
+		return buffer.getInt(offsetsAt + node * Integer.BYTES);
+	}
+
+	/**
+	 * @param node the node value, must be below {@link #size()}
+	 * @return index one past the last edge from the node
+	 */
+	public int end(int node) {
+		return buffer.getInt(offsetsAt + (node + 1) * Integer.BYTES);
+	}
+
+	/**
+	 * @param edge the edge index, below {@link #end(int)} of the last node
+	 * @return the value of the node at the other end of the edge
+	 */
+	public int target(int edge) {
+		return buffer.getInt(targetsAt + edge * Integer.BYTES);
+	}
+
+	/**
+	 * @param edge the edge index, below {@link #end(int)} of the last node
+	 * @return the edge's transport; never null
+	 */
+	public Transport transport(int edge) {
+		return TRANSPORTS[buffer.get(transportsAt + edge)];
+	}
+
+	/**
+	 * @return a new graph with the map's nodes and edges, in the order they
+	 *         were written; never null
+	 */
+	public ImmutableGraph<Integer, Transport> toGraph() {
+		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
+		List<Node<Integer>> byValue = new ArrayList<>(Collections.nCopies(size, null));
+		for (int i = 0; i < nodes; i++) {
+			Node<Integer> node = new Node<>(buffer.getInt(nodesAt + i * Integer.BYTES));
+			byValue.set(node.value(), node);
+			graph.addNode(node);
+		}
+		for (int i = 0; i < edges; i++) {
+			graph.addEdge(new Edge<>(
+					byValue.get(buffer.getInt(sourcesAt + i * Integer.BYTES)),
+					byValue.get(buffer.getInt(destinationsAt + i * Integer.BYTES)),
+					TRANSPORTS[buffer.get(edgeTransportsAt + i)]));
+		}
+		return new ImmutableGraph<>(graph);
+	}
+
+	/**
+	 * @return the map coordinates of each node as (x, y), as given in
+	 *         {@code pos.txt}; never null
+	 */
+	public Map<Integer, Entry<Integer, Integer>> positions() {
+		Map<Integer, Entry<Integer, Integer>> map = new HashMap<>();
+		for (int i = 0; i < positions; i++) {
+			int at = positionsAt + 3 * i * Integer.BYTES;
+			map.put(buffer.getInt(at), new SimpleImmutableEntry<>(
+					buffer.getInt(at + Integer.BYTES), buffer.getInt(at + 2 * Integer.BYTES)));
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledMap{" + "nodes=" + nodes + ", edges=" + edges + ", positions="
+				+ positions + '}';
+	}
+
+}
@@ -0,0 +1,62 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+
+/**
+ * Offline tool that converts a text map, in the formats of {@code graph.txt}
+ * and {@code pos.txt}, to a {@link CompiledMap}. <br>
+ * Usage:
+ *
+ * <pre>
+ * mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.model.MapCompiler \
+ *     -Dexec.args="--graph src/main/resources/graph.txt \
+ *     --positions src/main/resources/pos.txt --out map.bin"
+ * </pre>
+ *
+ * Options are {@code --graph} and {@code --out} (both required) and
+ * {@code --positions} (default none). Play on the compiled map by passing
+ * {@code -Dscotlandyard.map=map.bin} to the game; it is not looked for on the
+ * classpath.
+ */
+public final class MapCompiler {
+
+	private MapCompiler() {}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		String graphFile = options.get("graph");
+		String out = options.get("out");
+		if (graphFile == null) throw new IllegalArgumentException("--graph is required");
+		if (out == null) throw new IllegalArgumentException("--out is required");
+		String positionsFile = options.get("positions");
+
+		ImmutableGraph<Integer, Transport> graph;
+		try (InputStream stream = Files.newInputStream(Paths.get(graphFile))) {
+			graph = ScotlandYardGraphReader.fromStream(stream);
+		}
+		Map<Integer, Entry<Integer, Integer>> positions = Collections.emptyMap();
+		if (positionsFile != null) {
+			try (InputStream stream = Files.newInputStream(Paths.get(positionsFile))) {
+				positions = StandardGame.positionsFromStream(stream);
+			}
+		}
+		CompiledMap.write(Paths.get(out), graph, positions);
+		System.out.printf("%d nodes, %d edges and %d positions written to %s%n",
+				graph.size(), graph.getEdges().size() / 2, positions.size(), out);
+	}
+
+}
@@ -0,0 +1,369 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceTable;
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+
+/**
+ * Generates Scotland Yard maps of any size for scaling tests, with the same
+ * mix of transport as the standard map. <br>
+ * Nodes {@code 1} to {@code n} sit on a jittered square grid. Taxi edges join
+ * grid neighbours, with enough of them kept to connect every node; bus routes
+ * hop a few cells at a time between a subset of nodes; underground lines make
+ * long hops between a smaller subset of the bus stops; and a few boat edges
+ * cross the map between nodes on its edge. Per node there are about as many
+ * edges of each kind as on the standard map. The same size and seed always
+ * give the same map. <br>
+ * Usage:
+ *
+ * <pre>
+ * mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.model.MapGenerator \
+ *     -Dexec.args="--nodes 10000 --seed 1 --graph graph10k.txt --positions pos10k.txt"
+ * </pre>
+ *
+ * Options are {@code --nodes} (required), {@code --seed} (default 0),
+ * {@code --graph} and {@code --positions} for the text files in the formats of
+ * {@code graph.txt} and {@code pos.txt}, and {@code --compiled} for a
+ * {@link CompiledMap}; each output is optional. Play on a generated map by
+ * passing {@code -Dscotlandyard.map=} with the compiled file to the game. <br>
+ * Maps up to {@link #MAX_NODES} are for measuring the model and the graph
+ * structures. The search AIs build a {@link DistanceTable} every game, which
+ * needs two bytes per pair of nodes and refuses maps of
+ * {@link DistanceTable#MAX_SIZE} nodes or more, so they can only play on maps
+ * of up to a few thousand nodes: 10,000 nodes already take 200 MB.
+ */
+public final class MapGenerator {
+
+	/**
+	 * Fewest nodes a map can have; games from the standard start locations
+	 * need at least 174
+	 */
+	public static final int MIN_NODES = 16;
+
+	/**
+	 * Most nodes a map can have; see the class documentation for the far
+	 * smaller maps the search AIs can play on
+	 */
+	public static final int MAX_NODES = 1_000_000;
+
+	private static final int SPACING = 150; // Pixels between grid cells, about as on the standard map
+	private static final double TAXI_EXTRA = 0.75; // Chance a grid edge not needed for connection is a taxi edge
+	private static final int BUS_STOP_EVERY = 3; // One node in this many is a bus stop
+	private static final int BUS_HOP = 3; // Most grid cells between bus stops, in each direction
+	private static final int BUS_ROUTE_STOPS = 8;
+	private static final int UNDERGROUND_STATION_EVERY = 5; // One bus stop in this many is a station
+	private static final int UNDERGROUND_HOP = 8;
+	private static final int UNDERGROUND_LINE_STATIONS = 6;
+	private static final int NODES_PER_BOAT = 70;
+
+	private final int nodes;
+	private final int width;
+	private final int[] xs;
+	private final int[] ys;
+	private final List<int[]> edges = new ArrayList<>(); // source, destination, transport ordinal
+	private final HashSet<Long> present = new HashSet<>();
+	private final SplittableRandom random;
+
+	private MapGenerator(int nodes, long seed) {
+		this.nodes = nodes;
+		this.width = (int) Math.ceil(Math.sqrt(nodes));
+		this.xs = new int[nodes + 1];
+		this.ys = new int[nodes + 1];
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Generates a map
+	 *
+	 * @param nodes number of nodes, from {@link #MIN_NODES} to
+	 *        {@link #MAX_NODES}
+	 * @param seed seed for every random choice
+	 * @return the map; never null
+	 */
+	public static MapGenerator generate(int nodes, long seed) {
+		if (nodes < MIN_NODES || nodes > MAX_NODES) throw new IllegalArgumentException(
+				"Nodes must be between " + MIN_NODES + " and " + MAX_NODES + ", got " + nodes);
+		MapGenerator map = new MapGenerator(nodes, seed);
+		map.place();
+		map.taxis();
+		int[] stops = map.bus();
+		map.underground(stops);
+		map.boats();
+		return map;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		String nodes = options.get("nodes");
+		if (nodes == null) throw new IllegalArgumentException("--nodes is required");
+		MapGenerator map = generate(Integer.parseInt(nodes),
+				Long.parseLong(options.getOrDefault("seed", "0")));
+		if (options.containsKey("graph")) {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(options.get("graph")),
+					StandardCharsets.UTF_8)) {
+				map.writeGraph(writer);
+			}
+		}
+		if (options.containsKey("positions")) {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(options.get("positions")),
+					StandardCharsets.UTF_8)) {
+				map.writePositions(writer);
+			}
+		}
+		if (options.containsKey("compiled"))
+			CompiledMap.write(Paths.get(options.get("compiled")), map.graph(), map.positions());
+		System.out.printf("%d nodes and %d edges%n", map.nodes(), map.edges());
+		if (map.nodes() >= DistanceTable.MAX_SIZE)
+			System.err.printf("Too many nodes for a distance table, the search AIs cannot"
+					+ " play on this map%n");
+	}
+
+	/**
+	 * @return number of nodes
+	 */
+	public int nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return number of edges, counting each undirected edge once
+	 */
+	public int edges() {
+		return edges.size();
+	}
+
+	/**
+	 * @return a new graph of the map, as {@link ScotlandYardGraphReader} would
+	 *         read it from {@link #writeGraph(Writer)}; never null
+	 */
+	public ImmutableGraph<Integer, Transport> graph() {
+		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
+		List<Node<Integer>> byValue = new ArrayList<>(nodes + 1);
+		byValue.add(null);
+		for (int node = 1; node <= nodes; node++) {
+			Node<Integer> added = new Node<>(node);
+			byValue.add(added);
+			graph.addNode(added);
+		}
+		Transport[] transports = Transport.values();
+		for (int[] edge : edges)
+			graph.addEdge(new Edge<>(byValue.get(edge[0]), byValue.get(edge[1]),
+					transports[edge[2]]));
+		return new ImmutableGraph<>(graph);
+	}
+
+	/**
+	 * @return the map coordinates of each node as (x, y), as they would be
+	 *         given in {@code pos.txt}; never null
+	 */
+	public Map<Integer, Entry<Integer, Integer>> positions() {
+		Map<Integer, Entry<Integer, Integer>> positions = new HashMap<>();
+		for (int node = 1; node <= nodes; node++)
+			positions.put(node, new SimpleImmutableEntry<>(xs[node], ys[node]));
+		return Collections.unmodifiableMap(positions);
+	}
+
+	/**
+	 * Writes the map in the format of {@code graph.txt}
+	 *
+	 * @param writer where to write; not null, not closed
+	 * @throws IOException if the writer fails
+	 */
+	public void writeGraph(Writer writer) throws IOException {
+		BufferedWriter out = new BufferedWriter(writer);
+		out.write(nodes + " " + edges.size() + "\n");
+		for (int node = 1; node <= nodes; node++)
+			out.write(node + "\n");
+		Transport[] transports = Transport.values();
+		for (int[] edge : edges)
+			out.write(edge[0] + " " + edge[1] + " " + transports[edge[2]] + "\n");
+		out.flush();
+	}
+
+	/**
+	 * Writes the node coordinates in the format of {@code pos.txt}
+	 *
+	 * @param writer where to write; not null, not closed
+	 * @throws IOException if the writer fails
+	 */
+	public void writePositions(Writer writer) throws IOException {
+		BufferedWriter out = new BufferedWriter(writer);
+		out.write(nodes + "\n");
+		for (int node = 1; node <= nodes; node++)
+			out.write(node + " " + xs[node] + " " + ys[node] + "\n");
+		out.flush();
+	}
+
+	// Grid cell of node n is (n - 1) % width, (n - 1) / width
+	private int node(int column, int row) {
+		if (column < 0 || column >= width || row < 0) return 0;
+		int node = row * width + column + 1;
+		return node <= nodes ? node : 0;
+	}
+
+	private void place() {
+		for (int node = 1; node <= nodes; node++) {
+			xs[node] = ((node - 1) % width) * SPACING + random.nextInt(SPACING / 2);
+			ys[node] = ((node - 1) / width) * SPACING + random.nextInt(SPACING / 2);
+		}
+	}
+
+	// Grid edges in random order, joining components first, as in Kruskal's algorithm
+	private void taxis() {
+		List<int[]> grid = new ArrayList<>();
+		for (int node = 1; node <= nodes; node++) {
+			int column = (node - 1) % width;
+			int row = (node - 1) / width;
+			int right = node(column + 1, row);
+			int down = node(column, row + 1);
+			if (right != 0) grid.add(new int[] { node, right });
+			if (down != 0) grid.add(new int[] { node, down });
+		}
+		for (int i = grid.size() - 1; i > 0; i--)
+			Collections.swap(grid, i, random.nextInt(i + 1));
+		int[] parents = new int[nodes + 1];
+		for (int node = 1; node <= nodes; node++)
+			parents[node] = node;
+		for (int[] edge : grid) {
+			int a = root(parents, edge[0]);
+			int b = root(parents, edge[1]);
+			if (a != b) {
+				parents[a] = b;
+				add(edge[0], edge[1], Transport.Taxi);
+			} else if (random.nextDouble() < TAXI_EXTRA) {
+				add(edge[0], edge[1], Transport.Taxi);
+			}
+		}
+	}
+
+	private static int root(int[] parents, int node) {
+		while (parents[node] != node) {
+			parents[node] = parents[parents[node]];
+			node = parents[node];
+		}
+		return node;
+	}
+
+	// Routes walk between nearby stops; returns the stops
+	private int[] bus() {
+		int[] stops = sample(1, nodes, Math.max(2, nodes / BUS_STOP_EVERY));
+		route(stops, BUS_HOP, BUS_ROUTE_STOPS, Transport.Bus,
+				Math.max(1, nodes / (2 * (BUS_ROUTE_STOPS - 1))));
+		return stops;
+	}
+
+	private void underground(int[] stops) {
+		int count = Math.max(2, stops.length / UNDERGROUND_STATION_EVERY);
+		int[] stations = new int[count];
+		int[] picked = sample(0, stops.length - 1, count);
+		for (int i = 0; i < count; i++)
+			stations[i] = stops[picked[i]];
+		route(stations, UNDERGROUND_HOP, UNDERGROUND_LINE_STATIONS, Transport.Underground,
+				Math.max(1, nodes / (10 * (UNDERGROUND_LINE_STATIONS - 1))));
+	}
+
+	// Lines of the given number of stops, each next stop the closest unvisited one within a hop
+	private void route(int[] stops, int hop, int length, Transport transport, int lines) {
+		boolean[] isStop = new boolean[nodes + 1];
+		for (int stop : stops)
+			isStop[stop] = true;
+		for (int line = 0; line < lines; line++) {
+			int at = stops[random.nextInt(stops.length)];
+			for (int i = 1; i < length; i++) {
+				int next = nearbyStop(at, hop, isStop, transport);
+				if (next == 0) break;
+				add(at, next, transport);
+				at = next;
+			}
+		}
+	}
+
+	// A random stop within hop cells not already joined to this one, 0 if none
+	private int nearbyStop(int from, int hop, boolean[] isStop, Transport transport) {
+		int column = (from - 1) % width;
+		int row = (from - 1) / width;
+		int seen = 0;
+		int chosen = 0;
+		for (int dy = -hop; dy <= hop; dy++) {
+			for (int dx = -hop; dx <= hop; dx++) {
+				int node = node(column + dx, row + dy);
+				if (node == 0 || node == from || !isStop[node]) continue;
+				if (present.contains(key(from, node, transport))) continue;
+				if (random.nextInt(++seen) == 0) chosen = node; // Reservoir sampling
+			}
+		}
+		return chosen;
+	}
+
+	// Boats join nodes on opposite sides of the map
+	private void boats() {
+		int rows = (nodes - 1) / width + 1;
+		int boats = Math.max(1, nodes / NODES_PER_BOAT);
+		for (int i = 0; i < boats; i++) {
+			int a;
+			int b;
+			if (random.nextBoolean()) {
+				a = node(0, random.nextInt(rows - 1));
+				b = node(width - 1, random.nextInt(rows - 1));
+			} else {
+				a = node(random.nextInt(width), 0);
+				b = node(random.nextInt(width), rows - 2);
+			}
+			if (a != 0 && b != 0 && a != b) add(a, b, Transport.Boat);
+		}
+	}
+
+	// Distinct values from low to high inclusive, in random order
+	private int[] sample(int low, int high, int count) {
+		int[] values = new int[high - low + 1];
+		for (int i = 0; i < values.length; i++)
+			values[i] = low + i;
+		for (int i = 0; i < count; i++) {
+			int j = i + random.nextInt(values.length - i);
+			int swap = values[i];
+			values[i] = values[j];
+			values[j] = swap;
+		}
+		int[] sample = new int[count];
+		System.arraycopy(values, 0, sample, 0, count);
+		return sample;
+	}
+
+	private void add(int a, int b, Transport transport) {
+		if (!present.add(key(a, b, transport))) return;
+		edges.add(new int[] { a, b, transport.ordinal() });
+	}
+
+	private static long key(int a, int b, Transport transport) {
+		return ((long) Math.min(a, b) << 32 | Math.max(a, b)) * 8 + transport.ordinal();
+	}
+
+	@Override
+	public String toString() {
+		return "MapGenerator{" + "nodes=" + nodes + ", edges=" + edges.size() + '}';
+	}
+
+}
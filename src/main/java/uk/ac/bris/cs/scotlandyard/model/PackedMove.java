@@ -0,0 +1,175 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Objects;
+
+/**
+ * Encodes moves as primitive {@code long}s so they can be generated, stored
+ * and compared without allocating {@link Move} objects. <br>
+ * A packed move does not carry the colour of the player, that is implied by
+ * whoever is to move. <br>
+ *
+ * Layout (least significant bit first):
+ * <ul>
+ * <li>bits 0-2: ticket of the (first) move</li>
+ * <li>bits 3-5: ticket of the second move, only for double moves</li>
+ * <li>bit 6: set for double moves</li>
+ * <li>bit 7: set for pass moves</li>
+ * <li>bits 8-31: destination of the (first) move</li>
+ * <li>bits 32-55: destination of the second move, only for double moves</li>
+ * </ul>
+ */
+public final class PackedMove {
+
+	private PackedMove() {}
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private static final long TICKET_MASK = 0x7;
+	private static final long DESTINATION_MASK = 0xFFFFFF;
+	private static final long DOUBLE_FLAG = 1 << 6;
+	private static final long PASS_FLAG = 1 << 7;
+
+	/**
+	 * The largest destination a packed move can hold
+	 */
+	public static final int MAX_DESTINATION = (int) DESTINATION_MASK;
+
+	/**
+	 * The packed pass move
+	 */
+	public static final long PASS = PASS_FLAG;
+
+	/**
+	 * Packs a single ticket move
+	 *
+	 * @param ticket the ticket used; not null
+	 * @param destination the destination
+	 * @return the packed move
+	 */
+	public static long ticketMove(Ticket ticket, int destination) {
+		return ticketMove(ticket.ordinal(), destination);
+	}
+
+	/**
+	 * Packs a single ticket move
+	 *
+	 * @param ticket the ordinal of the ticket used
+	 * @param destination the destination
+	 * @return the packed move
+	 */
+	public static long ticketMove(int ticket, int destination) {
+		return ticket | ((long) destination << 8);
+	}
+
+	/**
+	 * Packs a double move from two single packed moves
+	 *
+	 * @param first the first packed ticket move
+	 * @param second the second packed ticket move
+	 * @return the packed double move
+	 */
+	public static long doubleMove(long first, long second) {
+		return (first & TICKET_MASK) | ((second & TICKET_MASK) << 3) | DOUBLE_FLAG
+				| (first & (DESTINATION_MASK << 8)) | ((second & (DESTINATION_MASK << 8)) << 24);
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return true if the move is a pass move
+	 */
+	public static boolean isPass(long move) {
+		return (move & PASS_FLAG) != 0;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return true if the move is a double move
+	 */
+	public static boolean isDouble(long move) {
+		return (move & DOUBLE_FLAG) != 0;
+	}
+
+	/**
+	 * @param move a packed ticket or double move
+	 * @return the ordinal of the (first) ticket
+	 */
+	public static int ticket(long move) {
+		return (int) (move & TICKET_MASK);
+	}
+
+	/**
+	 * @param move a packed double move
+	 * @return the ordinal of the second ticket
+	 */
+	public static int secondTicket(long move) {
+		return (int) ((move >>> 3) & TICKET_MASK);
+	}
+
+	/**
+	 * @param move a packed ticket or double move
+	 * @return the destination of the (first) move
+	 */
+	public static int destination(long move) {
+		return (int) ((move >>> 8) & DESTINATION_MASK);
+	}
+
+	/**
+	 * @param move a packed double move
+	 * @return the destination of the second move
+	 */
+	public static int secondDestination(long move) {
+		return (int) ((move >>> 32) & DESTINATION_MASK);
+	}
+
+	/**
+	 * @param move a packed ticket or double move
+	 * @return the location the player ends up at after the move
+	 */
+	public static int finalDestination(long move) {
+		return isDouble(move) ? secondDestination(move) : destination(move);
+	}
+
+	/**
+	 * Packs the given move
+	 *
+	 * @param move the move; not null
+	 * @return the packed move
+	 */
+	public static long pack(Move move) {
+		MovingVisitor visitor = new MovingVisitor();
+		Objects.requireNonNull(move).visit(visitor);
+		if (visitor.passMove) return PASS;
+		long first = ticketMove(visitor.firstMove.ticket(), visitor.firstMove.destination());
+		if (visitor.singleMove) return first;
+		return doubleMove(first,
+				ticketMove(visitor.secondMove.ticket(), visitor.secondMove.destination()));
+	}
+
+	/**
+	 * Unpacks the given move
+	 *
+	 * @param colour the colour of the player making the move; not null
+	 * @param move the packed move
+	 * @return the move; never null
+	 */
+	public static Move unpack(Colour colour, long move) {
+		Objects.requireNonNull(colour);
+		if (isPass(move)) return new PassMove(colour);
+		if (isDouble(move)) return new DoubleMove(colour,
+				TICKETS[ticket(move)], destination(move),
+				TICKETS[secondTicket(move)], secondDestination(move));
+		return new TicketMove(colour, TICKETS[ticket(move)], destination(move));
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return a human readable representation of the packed move
+	 */
+	public static String toString(long move) {
+		if (isPass(move)) return "Pass";
+		if (isDouble(move)) return "Double[" + TICKETS[ticket(move)] + "->" + destination(move)
+				+ ", " + TICKETS[secondTicket(move)] + "->" + secondDestination(move) + "]";
+		return "Ticket[" + TICKETS[ticket(move)] + "->" + destination(move) + "]";
+	}
+
+}
@@ -19,7 +19,8 @@ public class PlayerConfiguration {
 	public final Player player;
 
 	/**
-	 * Tickets for the player
+	 * Tickets for the player, a {@link TicketWallet} copied from the map given
+	 * to the builder
 	 */
 	public final Map<Ticket, Integer> tickets;
 
@@ -77,13 +78,15 @@ public class PlayerConfiguration {
 		}
 
 		/**
-		 * Sets the ticket of the configuration
+		 * Sets the ticket of the configuration, the counts are copied so later
+		 * changes to the map are not seen
 		 *
-		 * @param tickets see {@link PlayerConfiguration#tickets}; not null
+		 * @param tickets see {@link PlayerConfiguration#tickets}; not null,
+		 *        without null keys or values
 		 * @return the builder for chaining; never null
 		 */
 		public Builder with(Map<Ticket, Integer> tickets) {
-			this.tickets = Objects.requireNonNull(tickets);
+			this.tickets = TicketWallet.copyOf(tickets);
 			return this;
 		}
 
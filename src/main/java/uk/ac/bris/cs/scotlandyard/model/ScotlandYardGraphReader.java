@@ -1,6 +1,15 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -16,6 +25,12 @@ import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
 public class ScotlandYardGraphReader {
 
 	private static final String DELIMITER = " ";
+	private static final int UNKNOWN_LINE_COUNT = -1;
+
+	// Source of lines, null after the last one
+	private interface Lines {
+		String next() throws IOException;
+	}
 
 	private ScotlandYardGraphReader() {
 		// nope
@@ -30,39 +45,96 @@ public class ScotlandYardGraphReader {
 	public static ImmutableGraph<Integer, Transport> fromLines(List<String> lines) {
 		if (lines == null) throw new NullPointerException("lines == null");
 		if (lines.isEmpty()) throw new IllegalArgumentException("Lines must not be empty!");
+		Iterator<String> iterator = lines.iterator();
+		int[] index = { 0 };
+		try {
+			return read(() -> {
+				if (!iterator.hasNext()) return null;
+				String line = iterator.next();
+				if (line == null) throw new NullPointerException("Line " + index[0] + " is null");
+				index[0]++;
+				return line;
+			}, lines.size());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A list cannot fail to read
+		}
+	}
+
+	/**
+	 * Reads a Scotland Yard game map from a stream of UTF-8 text in the same
+	 * format as {@link #fromLines(List)}, one line at a time, so only the
+	 * graph is held in memory and not the text; lines after the last edge are
+	 * not parsed
+	 *
+	 * @param stream the stream, not closed; not null
+	 * @return a graph for {@link ScotlandYardGame} to use
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static ImmutableGraph<Integer, Transport> fromStream(InputStream stream)
+			throws IOException {
+		if (stream == null) throw new NullPointerException("stream == null");
+		return fromReader(new BufferedReader(
+				new InputStreamReader(stream, StandardCharsets.UTF_8)));
+	}
 
-		String[] topLine = parseLine(0, lines, DELIMITER, 2);
+	/**
+	 * Reads a Scotland Yard game map from a channel of UTF-8 text, as
+	 * {@link #fromStream(InputStream)} does
+	 *
+	 * @param channel the channel, not closed; not null
+	 * @return a graph for {@link ScotlandYardGame} to use
+	 * @throws IOException if the channel cannot be read
+	 */
+	public static ImmutableGraph<Integer, Transport> fromChannel(ReadableByteChannel channel)
+			throws IOException {
+		if (channel == null) throw new NullPointerException("channel == null");
+		return fromReader(new BufferedReader(
+				Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1)));
+	}
+
+	private static ImmutableGraph<Integer, Transport> fromReader(BufferedReader reader)
+			throws IOException {
+		return read(reader::readLine, UNKNOWN_LINE_COUNT);
+	}
+
+	private static ImmutableGraph<Integer, Transport> read(Lines lines, int lineCount)
+			throws IOException {
+		String firstLine = lines.next();
+		if (firstLine == null) throw new IllegalArgumentException("Lines must not be empty!");
+		String[] topLine = parseLine(0, firstLine, DELIMITER, 2);
 		int numberOfNodes;
 		int numberOfEdges;
 		try {
 			numberOfNodes = Integer.parseInt(topLine[0]);
 			numberOfEdges = Integer.parseInt(topLine[1]);
 		} catch (NumberFormatException e) {
-			throw new IllegalArgumentException("Invalid symbol at line 1:\n\t" + lines.get(0));
+			throw new IllegalArgumentException("Invalid symbol at line 1:\n\t" + firstLine);
 		}
 
-		if (numberOfNodes + numberOfEdges > lines.size() - 1)
+		if (lineCount != UNKNOWN_LINE_COUNT && numberOfNodes + numberOfEdges > lineCount - 1)
 			throw new IllegalArgumentException("Line count < (edge count + node count)");
 
 		UndirectedGraph<Integer, Transport> graph = new UndirectedGraph<>();
 
 		// we read the first line already
 		for (int i = 1; i <= numberOfNodes; i++) {
-			if (lines.get(i).isEmpty())
+			String line = nextLine(lines);
+			if (line.isEmpty())
 				throw new IllegalArgumentException("Expected non-empty line at line " + i);
-			String value = parseLine(i, lines, DELIMITER, 1)[0];
+			String value = parseLine(i, line, DELIMITER, 1)[0];
 			try {
 				graph.addNode(new Node<>(Integer.parseInt(value)));
 			} catch (NumberFormatException e) {
 				throw new IllegalArgumentException(
-						"Expected integer at line " + i + "\n\t" + lines.get(i));
+						"Expected integer at line " + i + "\n\t" + line);
 			}
 		}
 
 		for (int i = numberOfNodes + 1; i <= numberOfNodes + numberOfEdges; i++) {
-			if (lines.get(i).isEmpty())
+			String line = nextLine(lines);
+			if (line.isEmpty())
 				throw new IllegalArgumentException("Expected non-empty line at line " + i);
-			String[] segments = parseLine(i, lines, DELIMITER, 3);
+			String[] segments = parseLine(i, line, DELIMITER, 3);
 
 			Node<Integer> source;
 			Node<Integer> destination;
@@ -72,29 +144,35 @@ public class ScotlandYardGraphReader {
 				destination = graph.getNode(Integer.parseInt(segments[1]));
 			} catch (NumberFormatException e) {
 				throw new IllegalArgumentException(
-						"Expected integer at line " + i + "\n\t" + lines.get(i));
+						"Expected integer at line " + i + "\n\t" + line);
 			}
 			try {
 				data = Transport.valueOf(segments[2]);
 			} catch (IllegalArgumentException e) {
 				throw new IllegalArgumentException(
 						"Expected enum with value of " + Arrays.toString(Transport.values())
-								+ " at line " + i + "\n\t" + lines.get(i));
+								+ " at line " + i + "\n\t" + line);
 			}
 			if (source == null) throw new IllegalArgumentException(
-					"Expected source node to exist in graph  at line " + i + "\n\t" + lines.get(i));
+					"Expected source node to exist in graph  at line " + i + "\n\t" + line);
 			if (destination == null) throw new IllegalArgumentException(
 					"Expected destination node to exist in graph  at line " + i + "\n\t"
-							+ lines.get(i));
+							+ line);
 			graph.addEdge(new Edge<>(source, destination, data));
 		}
 		return new ImmutableGraph<>(graph);
 	}
 
-	private static String[] parseLine(int line, List<String> lines, String delimiter,
+	// Running out of lines means there were fewer than the first line promised
+	private static String nextLine(Lines lines) throws IOException {
+		String line = lines.next();
+		if (line == null)
+			throw new IllegalArgumentException("Line count < (edge count + node count)");
+		return line;
+	}
+
+	private static String[] parseLine(int line, String currentLine, String delimiter,
 			int expectedSegments) {
-		String currentLine = lines.get(line);
-		if (currentLine == null) throw new NullPointerException("Line " + line + " is null");
 		String[] segments = currentLine.split(Pattern.quote(delimiter));
 		if (segments.length != expectedSegments) throw new IllegalArgumentException(
 				"Expected " + expectedSegments + " occurrences of delimiter \"" + delimiter
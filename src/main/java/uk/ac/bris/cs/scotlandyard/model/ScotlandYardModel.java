@@ -4,22 +4,34 @@ import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
-import uk.ac.bris.cs.gamekit.graph.Edge;
 import uk.ac.bris.cs.gamekit.graph.Graph;
-import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.IntGraph;
 
 import static uk.ac.bris.cs.scotlandyard.model.Colour.Black;
 
 public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
 	private Collection<Spectator> spectators = new CopyOnWriteArrayList<>();
-    private Graph<Integer, Transport> graph;
+    private IntGraph<Transport> graph; // flat snapshot of the map, getGraph() hands out its Graph view
     private List<Boolean> rounds;
     private MrXPlayer mrX;
     private List<ScotlandYardPlayer> players = new CopyOnWriteArrayList<>();
     private List<Colour> colours = new CopyOnWriteArrayList<>();
     private int currentPlayer, currentRound;
     private boolean gameOver;
+    // Memoized until the next state change, see changed()
+    private final Map<Colour, Set<Move>> validMovesCache = new EnumMap<>(Colour.class);
+    private boolean gameOverKnown;
+    private Set<Colour> winners;
+    private final int maxMoves; // Size of a buffer that fits every valid move on this map
+    private long[] moveBuffer; // Scratch space for the Set returning methods
+
+    private static final Ticket[] TICKETS = Ticket.values();
+    private static final Ticket[] TRANSPORT_TICKETS = new Ticket[Transport.values().length];
+    static {
+        for (Transport transport : Transport.values())
+            TRANSPORT_TICKETS[transport.ordinal()] = Ticket.fromTransport(transport);
+    }
 
 	public ScotlandYardModel(List<Boolean> rounds, Graph<Integer, Transport> graph,
 			PlayerConfiguration mrX, PlayerConfiguration firstDetective,
@@ -28,10 +40,14 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
         gameOver = false;
 	    currentPlayer = 0;
         currentRound = 0;
-		this.graph = Objects.requireNonNull(graph);
+		this.graph = IntGraph.of(Objects.requireNonNull(graph), Transport.class);
 		this.rounds = Objects.requireNonNull(rounds);
         if (rounds.isEmpty()) throw new IllegalArgumentException("Empty rounds.");
-        if (graph.isEmpty()) throw new IllegalArgumentException("Empty graph.");
+        if (this.graph.asGraph().isEmpty()) throw new IllegalArgumentException("Empty graph.");
+        int degree = 0;
+        for (int node = 0; node < this.graph.size(); node++) degree = Math.max(degree, this.graph.degree(node));
+        int singles = degree * 2; // Every edge plus a secret alternative
+        maxMoves = Math.max(1, singles + singles * singles);
         if (mrX.colour != Black) throw new IllegalArgumentException("MrX should be Black.");
         this.mrX = new MrXPlayer((Objects.requireNonNull(mrX)));
         players.add(this.mrX);
@@ -79,49 +95,113 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 	}
 
 	public Set<Move> validMoves(Colour colour) {
-	    Set<Move> moves = new HashSet<>();
-	    if (colour == Black) {
-			Set<TicketMove> firstMoves = new HashSet<>();
-			firstMoves.addAll(generateMoves(Black, mrX.location()));
-            moves.addAll(firstMoves);
-	        if (mrX.hasTickets(Ticket.Double) && currentRound < rounds.size() - 1) {
-                for (TicketMove first: firstMoves) {
-                    Set<TicketMove> secondMoves = new HashSet<>();
-                    secondMoves.addAll(generateMoves(Black, first.destination()));
-                    for (TicketMove second: secondMoves) {
-                        if (first.ticket() == second.ticket()) {
-                            if (mrX.hasTickets(first.ticket(), 2)) {
-                                moves.add(new DoubleMove(Black, first, second));
-                            }
-                        } else if (mrX.hasTickets(first.ticket()) && mrX.hasTickets(second.ticket())) {
-                                moves.add(new DoubleMove(Black, first, second));
-                        }
-                    }
-                }
+        Set<Move> cached = validMovesCache.get(colour);
+        if (cached != null) return cached;
+        Set<Move> moves = new HashSet<>();
+        int count = validMoves(colour, buffer());
+        for (int i = 0; i < count; i++) moves.add(PackedMove.unpack(colour, moveBuffer[i]));
+        cached = Collections.unmodifiableSet(moves);
+        validMovesCache.put(colour, cached);
+        return cached;
+    }
+
+    // Forgets everything memoized, called after every change to locations, tickets or the round;
+    // package-private so benchmarks can time the calls it memoizes
+    void changed() {
+        validMovesCache.clear();
+        gameOverKnown = false;
+        winners = null;
+    }
+
+    /**
+     * Writes the valid moves of a player into a buffer as {@link PackedMove}s,
+     * without allocating. A detective with no moves gets a single pass move.
+     *
+     * @param colour the player; not null
+     * @param buffer where to write the moves, at least {@link #maxMoves()} long
+     * @return number of moves written
+     */
+    public int validMoves(Colour colour, long[] buffer) {
+        if (colour != Black) {
+            ScotlandYardPlayer player = player(colour);
+            int count = singleMoves(player, player.location(), buffer, 0);
+            if (count == 0) buffer[count++] = PackedMove.PASS;
+            return count;
+        }
+        int singles = singleMoves(mrX, mrX.location(), buffer, 0);
+        if (!mrX.hasTickets(Ticket.Double) || currentRound >= rounds.size() - 1) return singles;
+        int count = singles;
+        for (int i = 0; i < singles; i++) {
+            long first = buffer[i];
+            int ticket = PackedMove.ticket(first);
+            int seconds = singleMoves(mrX, PackedMove.destination(first), buffer, count);
+            for (int j = count; j < count + seconds; j++) { // Pairs them in place, each slot holds its own second move
+                long second = buffer[j];
+                if (PackedMove.ticket(second) != ticket || mrX.hasTickets(TICKETS[ticket], 2))
+                    buffer[j] = PackedMove.doubleMove(first, second);
+                else buffer[j] = PackedMove.PASS; // Compacted below
             }
-        } else {
-            moves.addAll(generateMoves(colour, player(colour).location()));
-            if (moves.isEmpty()) moves.add(new PassMove(colour));
+            int kept = count;
+            for (int j = count; j < count + seconds; j++)
+                if (!PackedMove.isPass(buffer[j])) buffer[kept++] = buffer[j];
+            count = kept;
         }
-        return Collections.unmodifiableSet(moves);
+        return count;
+    }
+
+    /**
+     * @return the most moves {@link #validMoves(Colour, long[])} can write for
+     *         this game's map
+     */
+    public int maxMoves() {
+        return maxMoves;
     }
 
     public Set<TicketMove> generateMoves(Colour colour, int startLocation) {
         Set<TicketMove> moves = new HashSet<>();
-        Collection<Edge<Integer, Transport>> edges = graph.getEdgesFrom(graph.getNode(startLocation));
-        List<Integer> locations = new ArrayList<>();
-        for (ScotlandYardPlayer player : players) {
-            if (!player.isMrX()) locations.add(player.location());
-        }
-        for (Edge<Integer, Transport> edge : edges) {
-            if (player(colour).hasTickets(Ticket.fromTransport(edge.data())) && !locations.contains(edge.destination().value())) {
-                moves.add(new TicketMove(colour, Ticket.fromTransport(edge.data()), edge.destination().value()));
-                if (colour == Black && mrX.hasTickets(Ticket.Secret)) {
-                    moves.add(new TicketMove(Black, Ticket.Secret, edge.destination().value()));
-                }
+        long[] buffer = buffer();
+        int count = singleMoves(player(colour), startLocation, buffer, 0);
+        for (int i = 0; i < count; i++)
+            moves.add(new TicketMove(colour, TICKETS[PackedMove.ticket(buffer[i])], PackedMove.destination(buffer[i])));
+        return moves;
+    }
+
+    // Distinct single moves from the location with the player's tickets, written from offset
+    private int singleMoves(ScotlandYardPlayer player, int location, long[] buffer, int offset) {
+        if (!graph.contains(location)) return 0;
+        boolean secret = player == mrX && mrX.hasTickets(Ticket.Secret);
+        int count = offset;
+        for (IntGraph.Layer<Transport> layer : graph.layers()) {
+            Ticket ticket = TRANSPORT_TICKETS[layer.data().ordinal()];
+            if (!player.hasTickets(ticket)) continue; // Edges the player cannot pay for are never visited
+            for (int edge = layer.start(location); edge < layer.end(location); edge++) {
+                int destination = layer.target(edge);
+                if (isDetectiveAt(destination)) continue;
+                count = addDistinct(buffer, offset, count, PackedMove.ticketMove(ticket, destination));
+                if (secret) count = addDistinct(buffer, offset, count, PackedMove.ticketMove(Ticket.Secret, destination));
             }
         }
-        return moves;
+        return count - offset;
+    }
+
+    // Parallel edges with the same transport, or boat and secret, would repeat a move
+    private static int addDistinct(long[] buffer, int from, int to, long move) {
+        for (int i = from; i < to; i++) if (buffer[i] == move) return to;
+        buffer[to] = move;
+        return to + 1;
+    }
+
+    private boolean isDetectiveAt(int location) {
+        for (int i = 0; i < players.size(); i++) {
+            ScotlandYardPlayer player = players.get(i);
+            if (player != mrX && player.location() == location) return true;
+        }
+        return false;
+    }
+
+    private long[] buffer() {
+        if (moveBuffer == null) moveBuffer = new long[maxMoves];
+        return moveBuffer;
     }
 
 	@Override
@@ -144,13 +224,13 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
     private boolean areDetectivesStuck() {
         for (ScotlandYardPlayer player : players) {
-            if (player != mrX && !generateMoves(player.colour(), player.location()).isEmpty()) return false;
+            if (player != mrX && singleMoves(player, player.location(), buffer(), 0) > 0) return false;
         }
         return true;
     }
 
     private boolean isMrXStuck() {
-        return validMoves(Black).isEmpty();
+        return singleMoves(mrX, mrX.location(), buffer(), 0) == 0; // No singles means no doubles either
     }
 
     private boolean isMrXCaptured() {
@@ -164,12 +244,14 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
 	@Override
 	public Set<Colour> getWinningPlayers() {
+	    if (this.winners != null) return this.winners;
 	    Set<Colour> winners = new HashSet<>();
 		if (isMrXCaptured() || isMrXStuck()) {
 		    winners.addAll(colours);
 		    winners.remove(Black);
         } else if (currentRound == rounds.size() || areDetectivesStuck()) winners.add(Black);
-		return Collections.unmodifiableSet(winners);
+		this.winners = Collections.unmodifiableSet(winners);
+		return this.winners;
 	}
 
 	@Override
@@ -183,12 +265,15 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
 	@Override
 	public int getPlayerTickets(Colour colour, Ticket ticket) {
-	    return player(colour).tickets().get(ticket);
+	    return player(colour).tickets().count(ticket);
 	}
 
 	@Override
 	public boolean isGameOver() {
-        gameOver = (currentRound == rounds.size() || areDetectivesStuck() || isMrXStuck() || isMrXCaptured());
+        if (!gameOverKnown) {
+            gameOver = (currentRound == rounds.size() || areDetectivesStuck() || isMrXStuck() || isMrXCaptured());
+            gameOverKnown = true;
+        }
 	    return gameOver;
 	}
 
@@ -215,7 +300,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
 
 	@Override
 	public Graph<Integer, Transport> getGraph() {
-	    return new ImmutableGraph<>(graph);
+	    return graph.asGraph();
 	}
 
     private void mrXMoveLocation() {
@@ -240,6 +325,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
                     mrX.addTicket(visitor.firstMove.ticket());
                     player(move.colour()).removeTicket(visitor.firstMove.ticket());
                     player(move.colour()).location(visitor.location);
+                    changed();
                 }
             } else {
                 mrX.removeTicket(visitor.firstMove.ticket());
@@ -248,11 +334,13 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
                 if (!visitor.singleMove) {
                     mrX.removeTicket(visitor.secondMove.ticket());
                     mrX.removeTicket(Ticket.Double);
+                    changed();
                     for (Spectator s : spectators ) {
                         s.onMoveMade(this, new DoubleMove(Black, visitor.firstMove.ticket(), mrX.getLastKnownLocation(), visitor.secondMove.ticket(), mrXMoveLocation(visitor)));
                     }
                 }
                 currentRound++;
+                changed();
                 for (Spectator s : spectators ) {
                     s.onRoundStarted(this, currentRound);
                     s.onMoveMade(this, new TicketMove(Black, visitor.firstMove.ticket(), mrX.getLastKnownLocation() ));
@@ -261,6 +349,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move> {
                     mrX.location(visitor.location);
                     mrXMoveLocation();
                     currentRound++;
+                    changed();
                     for (Spectator s : spectators ) {
                         s.onRoundStarted(this, currentRound);
                         s.onMoveMade(this, new TicketMove(Black, visitor.secondMove.ticket(), mrX.getLastKnownLocation()));
@@ -1,6 +1,5 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -11,7 +10,7 @@ public class ScotlandYardPlayer {
 	private final Player player;
 	private final Colour colour;
 	private int location;
-	private final Map<Ticket, Integer> tickets;
+	private final TicketWallet tickets;
 
 	/**
 	 * Constructs a new ScotlandYardPlayer object.
@@ -26,14 +25,14 @@ public class ScotlandYardPlayer {
 		this.player = player;
 		this.colour = colour;
 		this.location = location;
-		this.tickets = new HashMap<>(tickets);
+		this.tickets = TicketWallet.copyOf(tickets);
 	}
 
 	public ScotlandYardPlayer(PlayerConfiguration newPlayer){
 		this.player = newPlayer.player;
 		this.colour = newPlayer.colour;
 		this.location = newPlayer.location;
-		this.tickets = new HashMap<>(newPlayer.tickets);
+		this.tickets = TicketWallet.copyOf(newPlayer.tickets);
 	}
 
 	/**
@@ -85,9 +84,10 @@ public class ScotlandYardPlayer {
 	}
 
 	/**
-	 * @return the player's current tickets.
+	 * @return the player's current tickets, changes to them are seen by the
+	 *         player.
 	 */
-	public Map<Ticket, Integer> tickets() {
+	public TicketWallet tickets() {
 		return tickets;
 	}
 
@@ -110,10 +110,7 @@ public class ScotlandYardPlayer {
 	}
 
 	private void adjustTicketCount(Ticket ticket, int by) {
-		Integer ticketCount = tickets.get(ticket);
-		ticketCount += by;
-		tickets.remove(ticket);
-		tickets.put(ticket, ticketCount);
+		tickets.add(ticket, by);
 	}
 
 	/**
@@ -123,7 +120,7 @@ public class ScotlandYardPlayer {
 	 * @return true if the player has the given ticket, false otherwise
 	 */
 	public boolean hasTickets(Ticket ticket) {
-		return tickets.get(ticket) != 0;
+		return tickets.count(ticket) != 0;
 	}
 
 	/**
@@ -136,7 +133,7 @@ public class ScotlandYardPlayer {
 	 *         otherwise
 	 */
 	public boolean hasTickets(Ticket ticket, int quantityInclusive) {
-		return tickets.get(ticket) >= quantityInclusive;
+		return tickets.has(ticket, quantityInclusive);
 	}
 
 	@Override
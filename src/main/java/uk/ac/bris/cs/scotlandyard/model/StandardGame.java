@@ -4,7 +4,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -116,6 +118,19 @@ public class StandardGame {
 		return map;
 	}
 
+	/**
+	 * @return mutable map of Mr.X's tickets in the board game: 4 taxi, 3 bus
+	 *         and 3 underground tickets on top of the secret and double
+	 *         tickets of {@link #generateMrXTickets()}
+	 */
+	public static Map<Ticket, Integer> generateBoardGameMrXTickets() {
+		Map<Ticket, Integer> map = generateMrXTickets();
+		map.put(Ticket.Taxi, 4);
+		map.put(Ticket.Bus, 3);
+		map.put(Ticket.Underground, 3);
+		return map;
+	}
+
 	/**
 	 * @return mutable map of default tickets for detectives
 	 */
@@ -135,35 +150,97 @@ public class StandardGame {
 
 	public static final int MAP_OFFSET = 60;
 
+	/**
+	 * The system property naming a {@link CompiledMap} file to play on instead
+	 * of the map resources
+	 */
+	public static final String MAP_PROPERTY = "scotlandyard.map";
+
 	public static Map<Integer, Entry<Integer, Integer>> pngMapPositionEntries() throws IOException {
-		List<String> lines = readString("pos.txt");
+		CompiledMap compiled = compiledMap();
+		Map<Integer, Entry<Integer, Integer>> positions;
+		if (compiled != null) {
+			positions = compiled.positions();
+		} else {
+			try (InputStream stream = openResource("pos.txt")) {
+				positions = positionsFromStream(stream);
+			}
+		}
 		Map<Integer, Entry<Integer, Integer>> map = new HashMap<>();
-		for (String line : lines) {
+		positions.forEach((node, position) -> map.put(node,
+				new SimpleImmutableEntry<>(
+						position.getKey() + MAP_OFFSET,
+						position.getValue() + MAP_OFFSET)));
+		return Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Reads map coordinates in the format of {@code pos.txt}, a line of
+	 * {@code node x y} for each node; lines with another number of values are
+	 * skipped
+	 *
+	 * @param lines the lines; not null
+	 * @return the coordinates of each node as (x, y), without
+	 *         {@link #MAP_OFFSET}
+	 */
+	public static Map<Integer, Entry<Integer, Integer>> positionsFromLines(List<String> lines) {
+		return positions(lines.stream());
+	}
+
+	/**
+	 * Reads map coordinates from a stream of UTF-8 text one line at a time, as
+	 * {@link #positionsFromLines(List)} does
+	 *
+	 * @param stream the stream, not closed; not null
+	 * @return the coordinates of each node as (x, y), without
+	 *         {@link #MAP_OFFSET}
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static Map<Integer, Entry<Integer, Integer>> positionsFromStream(InputStream stream)
+			throws IOException {
+		try {
+			return positions(new BufferedReader(
+					new InputStreamReader(stream, StandardCharsets.UTF_8)).lines());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static Map<Integer, Entry<Integer, Integer>> positions(Stream<String> lines) {
+		Map<Integer, Entry<Integer, Integer>> map = new HashMap<>();
+		lines.forEach(line -> {
 			Integer[] values = Stream.of(line.split("\\s+")).map(Integer::parseInt)
 					.toArray(Integer[]::new);
-			if (values.length != 3) continue;
-			map.put(values[0],
-					new SimpleImmutableEntry<>(
-							values[1] + MAP_OFFSET,
-							values[2] + MAP_OFFSET));
-		}
+			if (values.length != 3) return;
+			map.put(values[0], new SimpleImmutableEntry<>(values[1], values[2]));
+		});
 		return Collections.unmodifiableMap(map);
 	}
 
 	public static ImmutableGraph<Integer, Transport> standardGraph() throws IOException {
-		return ScotlandYardGraphReader.fromLines(readString("graph.txt"));
+		CompiledMap compiled = compiledMap();
+		if (compiled != null) return compiled.toGraph();
+		try (InputStream stream = openResource("graph.txt")) {
+			return ScotlandYardGraphReader.fromStream(stream);
+		}
 	}
 
-	private static List<String> readString(String resource) throws IOException {
-		try (InputStream stream = StandardGame.class
+	/**
+	 * @return the compiled map named by {@link #MAP_PROPERTY}, memory-mapped,
+	 *         otherwise null to read the text map resources
+	 * @throws IOException if the compiled map cannot be read
+	 */
+	public static CompiledMap compiledMap() throws IOException {
+		String path = System.getProperty(MAP_PROPERTY);
+		return path == null ? null : CompiledMap.load(Paths.get(path));
+	}
+
+	private static InputStream openResource(String resource) throws IOException {
+		InputStream stream = StandardGame.class
 				.getClassLoader()
-				.getResourceAsStream(resource)) {
-			if (stream == null) throw new IOException("Resource " + resource + " not found");
-			return new BufferedReader(
-					new InputStreamReader(stream, StandardCharsets.UTF_8))
-							.lines()
-							.collect(toList());
-		}
+				.getResourceAsStream(resource);
+		if (stream == null) throw new IOException("Resource " + resource + " not found");
+		return stream;
 	}
 
 }
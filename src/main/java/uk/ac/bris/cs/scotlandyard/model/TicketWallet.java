@@ -0,0 +1,186 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A player's ticket counts, stored as an {@code int} per {@link Ticket}
+ * indexed by ordinal. <br>
+ * The wallet is also a {@link Map} from ticket to count so it can be handed
+ * out wherever a ticket map is expected. A ticket the wallet was never given
+ * is absent from the map, which is how a configuration missing a ticket is
+ * still told apart from one holding none of it. {@link #count(Ticket)},
+ * {@link #has(Ticket, int)} and {@link #add(Ticket, int)} work on the
+ * primitive counts and never box.
+ */
+public final class TicketWallet extends AbstractMap<Ticket, Integer> {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final int MISSING = Integer.MIN_VALUE;
+
+	private final int[] counts;
+
+	private TicketWallet(int[] counts) {
+		this.counts = counts;
+	}
+
+	/**
+	 * @return a wallet without any tickets, not even zero counts
+	 */
+	public static TicketWallet empty() {
+		int[] counts = new int[TICKETS.length];
+		Arrays.fill(counts, MISSING);
+		return new TicketWallet(counts);
+	}
+
+	/**
+	 * @param tickets the ticket counts to copy; not null, without null keys or
+	 *        values
+	 * @return a new wallet holding the same counts; later changes to either are
+	 *         not seen by the other
+	 */
+	public static TicketWallet copyOf(Map<Ticket, Integer> tickets) {
+		Objects.requireNonNull(tickets);
+		if (tickets instanceof TicketWallet)
+			return new TicketWallet(((TicketWallet) tickets).counts.clone());
+		TicketWallet wallet = empty();
+		for (Entry<Ticket, Integer> entry : tickets.entrySet())
+			wallet.put(entry.getKey(), entry.getValue());
+		return wallet;
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @return true if the wallet has a count for the ticket, even if it is
+	 *         zero
+	 */
+	public boolean contains(Ticket ticket) {
+		return counts[ticket.ordinal()] != MISSING;
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @return number of the ticket held, zero if the wallet has no count for
+	 *         it
+	 */
+	public int count(Ticket ticket) {
+		int count = counts[ticket.ordinal()];
+		return count == MISSING ? 0 : count;
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @param quantity the number needed
+	 * @return true if at least the quantity of the ticket is held
+	 */
+	public boolean has(Ticket ticket, int quantity) {
+		return count(ticket) >= quantity;
+	}
+
+	/**
+	 * Changes the count of a ticket, starting from zero if the wallet has no
+	 * count for it
+	 *
+	 * @param ticket the ticket; not null
+	 * @param by the amount to add, negative to take tickets away
+	 */
+	public void add(Ticket ticket, int by) {
+		counts[ticket.ordinal()] = count(ticket) + by;
+	}
+
+	@Override
+	public Integer get(Object key) {
+		if (!(key instanceof Ticket)) return null;
+		int count = counts[((Ticket) key).ordinal()];
+		return count == MISSING ? null : count;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Ticket && contains((Ticket) key);
+	}
+
+	@Override
+	public Integer put(Ticket key, Integer value) {
+		Objects.requireNonNull(key, "ticket");
+		Objects.requireNonNull(value, "count");
+		if (value == MISSING) throw new IllegalArgumentException("Bad ticket count " + value);
+		Integer previous = get(key);
+		counts[key.ordinal()] = value;
+		return previous;
+	}
+
+	@Override
+	public Integer remove(Object key) {
+		Integer previous = get(key);
+		if (previous != null) counts[((Ticket) key).ordinal()] = MISSING;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(counts, MISSING);
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (int count : counts)
+			if (count != MISSING) size++;
+		return size;
+	}
+
+	@Override
+	public Set<Entry<Ticket, Integer>> entrySet() {
+		return new AbstractSet<Entry<Ticket, Integer>>() {
+			@Override
+			public Iterator<Entry<Ticket, Integer>> iterator() {
+				return new Entries();
+			}
+
+			@Override
+			public int size() {
+				return TicketWallet.this.size();
+			}
+		};
+	}
+
+	// Present tickets in ordinal order
+	private final class Entries implements Iterator<Entry<Ticket, Integer>> {
+
+		private int next = advance(0);
+		private int last = -1;
+
+		private int advance(int from) {
+			while (from < counts.length && counts[from] == MISSING) from++;
+			return from;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < counts.length;
+		}
+
+		@Override
+		public Entry<Ticket, Integer> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			last = next;
+			next = advance(next + 1);
+			return new SimpleImmutableEntry<>(TICKETS[last], counts[last]);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) throw new IllegalStateException();
+			counts[last] = MISSING;
+			last = -1;
+		}
+	}
+
+}
@@ -0,0 +1,28 @@
+package uk.ac.bris.cs.scotlandyard.tournament;
+
+/**
+ * The outcome of one headless game
+ */
+final class GameRecord {
+
+	final int seed;
+	final boolean mrXWon;
+	final int rounds; // Rounds played when the game ended
+	final long[] mrXLatencies; // Nanoseconds per Mr.X move
+	final long[] detectiveLatencies; // Nanoseconds per detective move
+
+	GameRecord(int seed, boolean mrXWon, int rounds, long[] mrXLatencies,
+			long[] detectiveLatencies) {
+		this.seed = seed;
+		this.mrXWon = mrXWon;
+		this.rounds = rounds;
+		this.mrXLatencies = mrXLatencies;
+		this.detectiveLatencies = detectiveLatencies;
+	}
+
+	@Override
+	public String toString() {
+		return "GameRecord{" + "seed=" + seed + ", mrXWon=" + mrXWon + ", rounds=" + rounds + '}';
+	}
+
+}
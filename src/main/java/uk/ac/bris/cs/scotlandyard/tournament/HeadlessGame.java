@@ -0,0 +1,240 @@
+package uk.ac.bris.cs.scotlandyard.tournament;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import javafx.geometry.Point2D;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.ai.AI;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * One game between two AIs without any UI, played on the calling thread. <br>
+ * The game is set up like a standard game: starting locations come from
+ * {@link StandardGame} with the game's seed, detectives get the standard
+ * tickets and Mr.X gets the board game's tickets from
+ * {@link StandardGame#generateBoardGameMrXTickets()}. Each side gets its own
+ * {@link PlayerFactory} instance, as in the UI. Every move is timed from
+ * {@link Player#makeMove(ScotlandYardView, int, Set, Consumer)} until the
+ * player answers; players may answer on another thread, the game waits. <br>
+ * The game is played in its own {@link ForkJoinPool}, so AIs that size their
+ * search to the pool they run in search with the game's share of the cores
+ * rather than all of them. AIs get a detached {@link Pane} to draw on, which
+ * nobody sees, and no images: {@link ResourceProvider#getMap()} and
+ * {@link ResourceProvider#getTicket(Ticket)} return null.
+ */
+final class HeadlessGame {
+
+	private static final Colour[] DETECTIVES = {
+			Colour.Blue, Colour.Green, Colour.Red, Colour.White, Colour.Yellow };
+
+	private final Graph<Integer, Transport> graph;
+	private final Map<Integer, Entry<Integer, Integer>> positions;
+	private final AI mrX;
+	private final AI detectives;
+	private final int detectiveCount;
+	private final Duration timeout;
+	private final int searchThreads;
+
+	/**
+	 * @param graph the map
+	 * @param positions node positions on the map image, for
+	 *        {@link ResourceProvider#coordinateAtNode(int)}
+	 * @param mrX the AI playing Mr.X
+	 * @param detectives the AI playing every detective
+	 * @param detectiveCount number of detectives, at most five
+	 * @param timeout the move timeout given to the AIs, or null for none
+	 * @param searchThreads parallelism of the pool each game is played in, at
+	 *        least one
+	 */
+	HeadlessGame(Graph<Integer, Transport> graph, Map<Integer, Entry<Integer, Integer>> positions,
+			AI mrX, AI detectives, int detectiveCount, Duration timeout, int searchThreads) {
+		if (detectiveCount < 1 || detectiveCount > DETECTIVES.length)
+			throw new IllegalArgumentException("Bad detective count " + detectiveCount);
+		if (searchThreads < 1)
+			throw new IllegalArgumentException("Bad search thread count " + searchThreads);
+		this.graph = graph;
+		this.positions = positions;
+		this.mrX = mrX;
+		this.detectives = detectives;
+		this.detectiveCount = detectiveCount;
+		this.timeout = timeout;
+		this.searchThreads = searchThreads;
+	}
+
+	/**
+	 * Plays the game to the end
+	 *
+	 * @param seed the seed for the starting locations
+	 * @return the result; never null
+	 * @throws Exception if an AI fails or stops answering
+	 */
+	GameRecord play(int seed) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(searchThreads);
+		try {
+			return pool.submit(() -> playIn(seed)).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private GameRecord playIn(int seed) throws Exception {
+		PlayerFactory mrXFactory = mrX.instantiate();
+		PlayerFactory detectiveFactory = detectives.instantiate();
+		List<Long> mrXLatencies = new ArrayList<>();
+		List<Long> detectiveLatencies = new ArrayList<>();
+
+		PlayerConfiguration mrXConfiguration = new PlayerConfiguration.Builder(Colour.Black)
+				.at(StandardGame.generateMrXLocation(seed))
+				.with(StandardGame.generateBoardGameMrXTickets())
+				.using(new TimedPlayer(mrXFactory.createPlayer(Colour.Black), mrXLatencies))
+				.build();
+		List<Integer> locations = StandardGame.generateDetectiveLocations(seed, detectiveCount);
+		PlayerConfiguration[] detectiveConfigurations = new PlayerConfiguration[detectiveCount];
+		for (int i = 0; i < detectiveCount; i++) {
+			detectiveConfigurations[i] = new PlayerConfiguration.Builder(DETECTIVES[i])
+					.at(locations.get(i))
+					.with(StandardGame.generateDetectiveTickets())
+					.using(new TimedPlayer(detectiveFactory.createPlayer(DETECTIVES[i]),
+							detectiveLatencies))
+					.build();
+		}
+		ScotlandYardModel model = new ScotlandYardModel(StandardGame.ROUNDS, graph,
+				mrXConfiguration, detectiveConfigurations[0],
+				Arrays.copyOfRange(detectiveConfigurations, 1, detectiveCount));
+
+		Progress progress = new Progress();
+		ResourceProvider provider = new HeadlessResourceProvider();
+		Pane surface = new Pane();
+		Visualiser visualiser = () -> surface;
+		for (PlayerFactory factory : new PlayerFactory[] { mrXFactory, detectiveFactory }) {
+			factory.createSpectators(model).forEach(model::registerSpectator);
+			factory.ready(visualiser, provider);
+		}
+		model.registerSpectator(progress);
+		try {
+			while (!model.isGameOver()) {
+				progress.rotated = false;
+				model.startRotate();
+				if (!progress.rotated && !model.isGameOver())
+					throw new IllegalStateException("A player did not answer in round "
+							+ model.getCurrentRound());
+			}
+		} finally {
+			mrXFactory.finish();
+			detectiveFactory.finish();
+		}
+		return new GameRecord(seed, model.getWinningPlayers().contains(Colour.Black),
+				model.getCurrentRound(), toArray(mrXLatencies), toArray(detectiveLatencies));
+	}
+
+	private static long[] toArray(List<Long> values) {
+		long[] array = new long[values.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = values.get(i);
+		return array;
+	}
+
+	private static final class Progress implements Spectator {
+
+		boolean rotated;
+
+		@Override
+		public void onRotationComplete(ScotlandYardView view) {
+			rotated = true;
+		}
+
+		@Override
+		public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+			rotated = true;
+		}
+	}
+
+	// Waits for the player's answer and records how long it took
+	private static final class TimedPlayer implements Player {
+
+		private final Player player;
+		private final List<Long> latencies;
+
+		TimedPlayer(Player player, List<Long> latencies) {
+			this.player = player;
+			this.latencies = latencies;
+		}
+
+		@Override
+		public void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+				Consumer<Move> callback) {
+			CompletableFuture<Move> answer = new CompletableFuture<>();
+			long started = System.nanoTime();
+			player.makeMove(view, location, moves, answer::complete);
+			Move move;
+			try {
+				move = answer.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a move", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			latencies.add(System.nanoTime() - started);
+			callback.accept(move);
+		}
+	}
+
+	private final class HeadlessResourceProvider implements ResourceProvider {
+
+		@Override
+		public Image getMap() {
+			return null;
+		}
+
+		@Override
+		public Image getTicket(Ticket ticket) {
+			return null;
+		}
+
+		@Override
+		public Graph<Integer, Transport> getGraph() {
+			return graph;
+		}
+
+		@Override
+		public Point2D coordinateAtNode(int node) {
+			Entry<Integer, Integer> position = positions.get(node);
+			return position == null ? null : new Point2D(position.getKey(), position.getValue());
+		}
+
+		@Override
+		public Optional<Duration> getTimeout() {
+			return Optional.ofNullable(timeout);
+		}
+	}
+
+}
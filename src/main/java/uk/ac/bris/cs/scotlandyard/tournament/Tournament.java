@@ -0,0 +1,203 @@
+package uk.ac.bris.cs.scotlandyard.tournament;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.ai.AI;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Headless entry point that plays many games between two {@link ManagedAI}s
+ * and reports how they did. <br>
+ * Games run in parallel, one per worker thread, each with its own AI
+ * instances; game {@code i} uses seed {@code seed + i} for the starting
+ * locations so a run can be repeated. Each game's AIs search on their share
+ * of the cores, see {@link HeadlessGame}. At the end the win rate of each side,
+ * the number of rounds games lasted and percentiles of the time each side
+ * took per move are printed. <br>
+ * Usage, with AIs given by their {@link ManagedAI#value()}:
+ *
+ * <pre>
+ * mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.tournament.Tournament \
+ *     -Dexec.args="--mrx 'Sions Angel' --detectives 'Monte Carlo' --games 1000"
+ * </pre>
+ *
+ * Options are {@code --mrx}, {@code --detectives} (both required),
+ * {@code --games} (default 100), {@code --threads} (default one per core),
+ * {@code --search-threads} for each game (default the cores divided between
+ * the threads, at least one), {@code --seed} (default 0), {@code --timeout} in seconds given to the AIs
+ * (default none) and {@code --players} for the number of detectives (default
+ * 5).
+ */
+public final class Tournament {
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 100 };
+
+	private final HeadlessGame game;
+	private final String description;
+	private final int games;
+	private final int threads;
+	private final int seed;
+
+	private Tournament(HeadlessGame game, String description, int games, int threads, int seed) {
+		this.game = game;
+		this.description = description;
+		this.games = games;
+		this.threads = threads;
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		List<AI> ais = AI.scanClasspath();
+		AI mrX = find(ais, required(options, "mrx"));
+		AI detectives = find(ais, required(options, "detectives"));
+		int games = Integer.parseInt(options.getOrDefault("games", "100"));
+		int cores = Runtime.getRuntime().availableProcessors();
+		int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(cores)));
+		int searchThreads = Integer.parseInt(options.getOrDefault("search-threads",
+				String.valueOf(Math.max(1, cores / Math.max(1, threads)))));
+		int seed = Integer.parseInt(options.getOrDefault("seed", "0"));
+		int players = Integer.parseInt(options.getOrDefault("players", "5"));
+		Duration timeout = options.containsKey("timeout")
+				? Duration.ofSeconds(Long.parseLong(options.get("timeout"))) : null;
+		if (games < 1 || threads < 1 || searchThreads < 1) throw new IllegalArgumentException(
+				"Need at least one game and one thread");
+
+		HeadlessGame game = new HeadlessGame(graph, positions(), mrX, detectives, players, timeout,
+				searchThreads);
+		String description = mrX.getName() + " (Mr.X) vs " + detectives.getName()
+				+ " (" + players + " detectives)";
+		List<GameRecord> records = new Tournament(game, description, games, threads, seed)
+				.run(System.err);
+		report(description, games, records, System.out);
+	}
+
+	// Node positions are only a convenience for AIs, a missing file is not fatal
+	private static Map<Integer, Entry<Integer, Integer>> positions() {
+		try {
+			return StandardGame.pngMapPositionEntries();
+		} catch (IOException e) {
+			return new HashMap<>();
+		}
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		return options;
+	}
+
+	private static String required(Map<String, String> options, String name) {
+		String value = options.get(name);
+		if (value == null) throw new IllegalArgumentException("--" + name + " is required");
+		return value;
+	}
+
+	private static AI find(List<AI> ais, String name) {
+		return ais.stream()
+				.filter(ai -> ai.getName().equals(name))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("No AI named " + name
+						+ ", known AIs are " + ais.stream().map(AI::getName).collect(joining(", "))));
+	}
+
+	/**
+	 * Plays every game, logging progress and failed games
+	 *
+	 * @param log where to write progress; not null
+	 * @return the records of the games that finished, in seed order
+	 * @throws InterruptedException if interrupted while waiting for games
+	 */
+	List<GameRecord> run(PrintStream log) throws InterruptedException {
+		Objects.requireNonNull(log);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicInteger finished = new AtomicInteger();
+		int every = Math.max(1, games / 20);
+		List<Callable<GameRecord>> tasks = new ArrayList<>();
+		for (int i = 0; i < games; i++) {
+			int gameSeed = seed + i;
+			tasks.add(() -> {
+				GameRecord record = game.play(gameSeed);
+				int done = finished.incrementAndGet();
+				if (done % every == 0) log.println(description + ": " + done + "/" + games);
+				return record;
+			});
+		}
+		List<GameRecord> records = new ArrayList<>();
+		try {
+			for (Future<GameRecord> future : executor.invokeAll(tasks)) {
+				try {
+					records.add(future.get());
+				} catch (ExecutionException e) {
+					log.println("Game failed: " + e.getCause());
+					e.getCause().printStackTrace(log);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+				log.println("Games still running after shutdown");
+		}
+		return records;
+	}
+
+	static void report(String description, int games, List<GameRecord> records,
+			PrintStream out) {
+		out.println(description);
+		out.printf("games: %d played, %d failed%n", records.size(), games - records.size());
+		if (records.isEmpty()) return;
+		long mrXWins = records.stream().filter(record -> record.mrXWon).count();
+		out.printf("win rate: Mr.X %.1f%%, detectives %.1f%%%n",
+				100.0 * mrXWins / records.size(),
+				100.0 * (records.size() - mrXWins) / records.size());
+		int[] rounds = records.stream().mapToInt(record -> record.rounds).sorted().toArray();
+		out.printf("rounds: mean %.1f, min %d, median %d, max %d%n",
+				Arrays.stream(rounds).average().orElse(0), rounds[0],
+				rounds[rounds.length / 2], rounds[rounds.length - 1]);
+		out.println("Mr.X move latency: " + latencies(records.stream()
+				.map(record -> record.mrXLatencies).toArray(long[][]::new)));
+		out.println("detective move latency: " + latencies(records.stream()
+				.map(record -> record.detectiveLatencies).toArray(long[][]::new)));
+	}
+
+	// Nearest rank percentiles in milliseconds
+	private static String latencies(long[][] perGame) {
+		long[] all = Arrays.stream(perGame).flatMapToLong(Arrays::stream).sorted().toArray();
+		if (all.length == 0) return "no moves";
+		StringBuilder sb = new StringBuilder().append(all.length).append(" moves");
+		for (double percentile : PERCENTILES) {
+			int rank = (int) Math.ceil(percentile / 100 * all.length);
+			long nanos = all[Math.max(0, rank - 1)];
+			sb.append(percentile == 100 ? ", max " : ", p" + (int) percentile + " ")
+					.append(String.format("%.2fms", nanos / 1e6));
+		}
+		return sb.toString();
+	}
+
+}
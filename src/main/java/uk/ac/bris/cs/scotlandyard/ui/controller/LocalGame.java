@@ -125,7 +125,7 @@ public final class LocalGame extends BaseGame implements Spectator {
 					status,
 					this);
 
-			pool.initialise(resourceManager, model);
+			pool.initialise(resourceManager, setup.timeoutProperty().get(), model);
 			// Add all players to board
 			for (PlayerProperty property : joining) {
 				board.setBoardPlayer(property.colour(),
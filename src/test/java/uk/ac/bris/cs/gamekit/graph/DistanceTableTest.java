@@ -0,0 +1,96 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Tests for {@link DistanceTable}, comparing the ways of building a table on
+ * the standard Scotland Yard map
+ */
+public class DistanceTableTest {
+
+	private static ImmutableGraph<Integer, Transport> graph;
+	private static IntGraph<Transport> snapshot;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		try (InputStream stream = DistanceTableTest.class.getResourceAsStream("/graph.txt")) {
+			graph = ScotlandYardGraphReader.fromStream(stream);
+		}
+		snapshot = IntGraph.of(graph, Transport.class);
+	}
+
+	@Test
+	public void testLayersEqualPredicate() {
+		assertEqual(DistanceTable.of(snapshot,
+				EnumSet.of(Transport.Taxi, Transport.Bus, Transport.Underground)),
+				DistanceTable.of(graph, transport -> transport != Transport.Boat));
+	}
+
+	@Test
+	public void testAllLayersEqualAllEdges() {
+		assertEqual(DistanceTable.of(snapshot, EnumSet.allOf(Transport.class)),
+				DistanceTable.of(graph));
+	}
+
+	@Test
+	public void testEveryLayerSubsetEqualsPredicate() {
+		for (int mask = 0; mask < 1 << Transport.values().length; mask++) {
+			Set<Transport> data = EnumSet.noneOf(Transport.class);
+			for (Transport transport : Transport.values())
+				if ((mask & 1 << transport.ordinal()) != 0) data.add(transport);
+			assertEqual(DistanceTable.of(snapshot, data), DistanceTable.of(graph, data::contains));
+		}
+	}
+
+	@Test
+	public void testByEdgeDataEqualsPredicate() {
+		Map<Transport, DistanceTable> tables = DistanceTable.byEdgeData(graph, Transport.class);
+		assertThat(tables.keySet()).containsExactly(Transport.values());
+		for (Transport transport : Transport.values()) {
+			Predicate<Transport> only = transport::equals;
+			assertEqual(tables.get(transport), DistanceTable.of(graph, only));
+		}
+	}
+
+	@Test
+	public void testKnownDistances() {
+		DistanceTable table = DistanceTable.of(graph);
+		assertThat(table.size()).isEqualTo(200);
+		assertThat(table.distance(1, 1)).isEqualTo(0);
+		assertThat(table.distance(1, 8)).isEqualTo(1);
+		assertThat(table.distance(8, 1)).isEqualTo(1);
+		assertThat(table.distance(0, 1)).isEqualTo(DistanceTable.UNREACHABLE);
+		assertThat(table.distance(-1, 1)).isEqualTo(DistanceTable.UNREACHABLE);
+		assertThat(table.distance(1, 200)).isEqualTo(DistanceTable.UNREACHABLE);
+	}
+
+	@Test
+	public void testBoatOnlyLeavesMostNodesUnreachable() {
+		DistanceTable table = DistanceTable.of(snapshot, EnumSet.of(Transport.Boat));
+		assertThat(table.distance(1, 8)).isEqualTo(DistanceTable.UNREACHABLE);
+		assertThat(table.distance(1, 1)).isEqualTo(0);
+	}
+
+	private static void assertEqual(DistanceTable actual, DistanceTable expected) {
+		assertThat(actual.size()).isEqualTo(expected.size());
+		for (int from = 0; from < expected.size(); from++)
+			for (int to = 0; to < expected.size(); to++)
+				if (actual.distance(from, to) != expected.distance(from, to))
+					assertThat(actual.distance(from, to)).as("%d to %d", from, to)
+							.isEqualTo(expected.distance(from, to));
+	}
+
+}
@@ -0,0 +1,16 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Includes all tests for the graph library
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+		UndirectedGraphTest.class,
+		IntGraphTest.class,
+		IntGraphLayerTest.class,
+		DistanceTableTest.class,
+		NeighbourMasksTest.class })
+public class GraphTest {}
@@ -0,0 +1,111 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Tests for {@link IntGraph.Layer}, checking every layer of the standard
+ * Scotland Yard map against the map's edges filtered by data
+ */
+public class IntGraphLayerTest {
+
+	private static ImmutableGraph<Integer, Transport> graph;
+	private static IntGraph<Transport> snapshot;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		try (InputStream stream = IntGraphLayerTest.class.getResourceAsStream("/graph.txt")) {
+			graph = ScotlandYardGraphReader.fromStream(stream);
+		}
+		snapshot = IntGraph.of(graph, Transport.class);
+	}
+
+	@Test
+	public void testLayersInOrdinalOrder() {
+		assertThat(snapshot.layers()).hasSize(Transport.values().length);
+		for (Transport transport : Transport.values()) {
+			assertThat(snapshot.layers().get(transport.ordinal()))
+					.isSameAs(snapshot.layer(transport));
+			assertThat(snapshot.layer(transport).data()).isEqualTo(transport);
+			assertThat(snapshot.layer(transport).graph()).isSameAs(snapshot);
+		}
+	}
+
+	@Test
+	public void testRowsMatchFilteredEdgesFrom() {
+		for (Transport transport : Transport.values()) {
+			IntGraph.Layer<Transport> layer = snapshot.layer(transport);
+			for (int value = 0; value < snapshot.size(); value++) {
+				List<Integer> row = new ArrayList<>();
+				for (int edge = layer.start(value); edge < layer.end(value); edge++)
+					row.add(layer.target(edge));
+				List<Integer> expected = new ArrayList<>();
+				if (graph.containsNode(value))
+					for (Edge<Integer, Transport> edge : graph.getEdgesFrom(graph.getNode(value)))
+						if (edge.data() == transport) expected.add(edge.destination().value());
+				assertThat(row).as("%s from %d", transport, value).isEqualTo(expected);
+				assertThat(layer.degree(value)).isEqualTo(expected.size());
+			}
+		}
+	}
+
+	@Test
+	public void testLayersPartitionTheEdges() {
+		int total = 0;
+		for (int value = 0; value < snapshot.size(); value++) {
+			int degree = 0;
+			for (IntGraph.Layer<Transport> layer : snapshot.layers())
+				degree += layer.degree(value);
+			assertThat(degree).isEqualTo(snapshot.degree(value));
+			total += degree;
+		}
+		assertThat(total).isEqualTo(snapshot.edges());
+	}
+
+	@Test
+	public void testAsGraphMatchesFilteredEdges() {
+		for (Transport transport : Transport.values()) {
+			Graph<Integer, Transport> layer = snapshot.layer(transport).asGraph();
+			assertThat(layer.getNodes()).containsExactlyElementsOf(graph.getNodes());
+			assertThat(layer.getEdges()).containsExactlyElementsOf(filter(graph.getEdges(),
+					transport));
+			for (Node<Integer> node : graph.getNodes()) {
+				assertThat(layer.getEdgesFrom(node)).containsExactlyElementsOf(
+						filter(graph.getEdgesFrom(node), transport));
+				assertThat(layer.getEdgesTo(node)).containsExactlyElementsOf(
+						filter(graph.getEdgesTo(node), transport));
+			}
+		}
+	}
+
+	@Test
+	public void testAsGraphIsBuiltOnce() {
+		for (IntGraph.Layer<Transport> layer : snapshot.layers())
+			assertThat(layer.asGraph()).isSameAs(layer.asGraph());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testAsGraphAddEdgeThrows() {
+		Graph<Integer, Transport> layer = snapshot.layer(Transport.Bus).asGraph();
+		layer.addEdge(new Edge<>(layer.getNode(1), layer.getNode(2), Transport.Bus));
+	}
+
+	private static List<Edge<Integer, Transport>> filter(
+			Iterable<Edge<Integer, Transport>> edges, Transport transport) {
+		List<Edge<Integer, Transport>> kept = new ArrayList<>();
+		for (Edge<Integer, Transport> edge : edges)
+			if (edge.data() == transport) kept.add(edge);
+		return kept;
+	}
+
+}
@@ -0,0 +1,174 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntGraph} and its {@link IntGraph#asGraph()} view
+ */
+public class IntGraphTest {
+
+	enum Line {
+		Red, Green, Blue
+	}
+
+	private UndirectedGraph<Integer, Line> graph;
+
+	// 1 - 2 - 4 with a second, different line between 1 and 2; 3 is missing and 6 is
+	// on its own
+	@Before
+	public void setUp() {
+		graph = new UndirectedGraph<>();
+		for (int value : new int[] { 4, 1, 2, 6 })
+			graph.addNode(new Node<>(value));
+		graph.addEdge(new Edge<>(graph.getNode(1), graph.getNode(2), Line.Red));
+		graph.addEdge(new Edge<>(graph.getNode(2), graph.getNode(4), Line.Blue));
+		graph.addEdge(new Edge<>(graph.getNode(1), graph.getNode(2), Line.Green));
+	}
+
+	@Test
+	public void testSizeIsOneMoreThanLargestValue() {
+		IntGraph<Line> snapshot = IntGraph.of(graph, Line.class);
+		assertThat(snapshot.size()).isEqualTo(7);
+		assertThat(snapshot.edges()).isEqualTo(graph.getEdges().size());
+	}
+
+	@Test
+	public void testContainsOnlyGraphNodes() {
+		IntGraph<Line> snapshot = IntGraph.of(graph, Line.class);
+		for (int value = -1; value <= 8; value++)
+			assertThat(snapshot.contains(value)).as("%s", value)
+					.isEqualTo(graph.containsNode(value));
+	}
+
+	@Test
+	public void testRowsMatchEdgesFromInOrder() {
+		IntGraph<Line> snapshot = IntGraph.of(graph, Line.class);
+		for (int node = 0; node < snapshot.size(); node++) {
+			List<Edge<Integer, Line>> expected = graph.containsNode(node)
+					? new ArrayList<>(graph.getEdgesFrom(graph.getNode(node)))
+					: new ArrayList<>();
+			assertThat(snapshot.degree(node)).isEqualTo(expected.size());
+			assertThat(snapshot.end(node) - snapshot.start(node)).isEqualTo(expected.size());
+			for (int i = 0; i < expected.size(); i++) {
+				int edge = snapshot.start(node) + i;
+				assertThat(snapshot.target(edge))
+						.isEqualTo(expected.get(i).destination().value());
+				assertThat(snapshot.data(edge)).isEqualTo(expected.get(i).data());
+				assertThat(snapshot.ordinal(edge)).isEqualTo(expected.get(i).data().ordinal());
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotIgnoresLaterChanges() {
+		IntGraph<Line> snapshot = IntGraph.of(graph, Line.class);
+		graph.addNode(new Node<>(9));
+		graph.addEdge(new Edge<>(graph.getNode(6), graph.getNode(9), Line.Red));
+		assertThat(snapshot.size()).isEqualTo(7);
+		assertThat(snapshot.degree(6)).isZero();
+		assertThat(snapshot.asGraph().containsNode(9)).isFalse();
+		assertThat(snapshot.asGraph().getEdges()).hasSize(6);
+	}
+
+	@Test
+	public void testEmptyGraph() {
+		IntGraph<Line> snapshot = IntGraph.of(new UndirectedGraph<>(), Line.class);
+		assertThat(snapshot.size()).isZero();
+		assertThat(snapshot.edges()).isZero();
+		assertThat(snapshot.contains(0)).isFalse();
+		assertThat(snapshot.asGraph().isEmpty()).isTrue();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeNodeValueThrows() {
+		graph.addNode(new Node<>(-1));
+		IntGraph.of(graph, Line.class);
+	}
+
+	@Test
+	public void testLargestAllowedNodeValue() {
+		int largest = 2 * (graph.size() + 1) + IntGraph.SPARE_VALUES - 1;
+		graph.addNode(new Node<>(largest));
+		assertThat(IntGraph.of(graph, Line.class).size()).isEqualTo(largest + 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSparseNodeValueThrows() {
+		graph.addNode(new Node<>(2 * (graph.size() + 1) + IntGraph.SPARE_VALUES));
+		IntGraph.of(graph, Line.class);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxNodeValueThrows() {
+		graph.addNode(new Node<>(Integer.MAX_VALUE));
+		IntGraph.of(graph, Line.class);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullGraphThrows() {
+		IntGraph.of(null, Line.class);
+	}
+
+	@Test
+	public void testViewEqualsSourceGraph() {
+		Graph<Integer, Line> view = IntGraph.of(graph, Line.class).asGraph();
+		assertThat(view).isEqualTo(graph);
+		assertThat(view.getNodes()).containsExactlyElementsOf(graph.getNodes());
+		assertThat(view.getEdges()).containsExactlyElementsOf(graph.getEdges());
+		assertThat(view.size()).isEqualTo(graph.size());
+		for (Node<Integer> node : graph.getNodes()) {
+			assertThat(view.getNode(node.value())).isEqualTo(node);
+			assertThat(view.containsNode(node.value())).isTrue();
+			assertThat(view.getEdgesFrom(node))
+					.containsExactlyElementsOf(graph.getEdgesFrom(node));
+			assertThat(view.getEdgesTo(node)).containsExactlyElementsOf(graph.getEdgesTo(node));
+		}
+	}
+
+	@Test
+	public void testViewReturnsSameListsOnEveryCall() {
+		Graph<Integer, Line> view = IntGraph.of(graph, Line.class).asGraph();
+		Node<Integer> node = graph.getNode(2);
+		assertThat(view.getEdgesFrom(node)).isSameAs(view.getEdgesFrom(node));
+		assertThat(view.getEdges()).isSameAs(view.getEdges());
+	}
+
+	@Test
+	public void testViewOfUnknownNodes() {
+		Graph<Integer, Line> view = IntGraph.of(graph, Line.class).asGraph();
+		for (int value : new int[] { -1, 3, 7, 100 }) {
+			assertThat(view.getNode(value)).isNull();
+			assertThat(view.containsNode(value)).isFalse();
+			assertThat(view.getEdgesFrom(new Node<>(value))).isEmpty();
+			assertThat(view.getEdgesTo(new Node<>(value))).isEmpty();
+		}
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testViewEdgesFromNullThrows() {
+		IntGraph.of(graph, Line.class).asGraph().getEdgesFrom(null);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewAddNodeThrows() {
+		IntGraph.of(graph, Line.class).asGraph().addNode(new Node<>(3));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewAddEdgeThrows() {
+		IntGraph.of(graph, Line.class).asGraph()
+				.addEdge(new Edge<>(graph.getNode(4), graph.getNode(6), Line.Red));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewListsAreReadOnly() {
+		IntGraph.of(graph, Line.class).asGraph().getNodes().clear();
+	}
+
+}
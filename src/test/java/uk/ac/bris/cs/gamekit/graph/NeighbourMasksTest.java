@@ -0,0 +1,212 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NeighbourMasks}
+ */
+public class NeighbourMasksTest {
+
+	enum Line {
+		Red, Green, Blue, Black
+	}
+
+	private UndirectedGraph<Integer, Line> graph;
+
+	// 1 -Red- 2 -Green- 70 -Red- 130, with 130 -Blue- 1 closing the loop; 3 is
+	// on its own. The nodes span three words.
+	@Before
+	public void setUp() {
+		graph = new UndirectedGraph<>();
+		for (int value : new int[] { 1, 2, 3, 70, 130 })
+			graph.addNode(new Node<>(value));
+		edge(1, 2, Line.Red);
+		edge(2, 70, Line.Green);
+		edge(70, 130, Line.Red);
+		edge(130, 1, Line.Blue);
+	}
+
+	private void edge(int from, int to, Line line) {
+		graph.addEdge(new Edge<>(graph.getNode(from), graph.getNode(to), line));
+	}
+
+	@Test
+	public void testSizeAndWords() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		assertThat(masks.size()).isEqualTo(131);
+		assertThat(masks.words()).isEqualTo(3);
+		assertThat(masks.newSet()).hasSize(3);
+		assertThat(masks.allKinds()).isEqualTo(0b1111);
+	}
+
+	@Test
+	public void testIsNeighbourFollowsEdgesBothWays() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		int red = masks.kind(Line.Red);
+		assertThat(masks.isNeighbour(1, 2, red)).isTrue();
+		assertThat(masks.isNeighbour(2, 1, red)).isTrue();
+		assertThat(masks.isNeighbour(2, 70, red)).isFalse();
+		assertThat(masks.isNeighbour(2, 70, red | masks.kind(Line.Green))).isTrue();
+		assertThat(masks.isNeighbour(1, 130, masks.allKinds())).isTrue();
+		assertThat(masks.isNeighbour(1, 3, masks.allKinds())).isFalse();
+		assertThat(masks.isNeighbour(-1, 3, masks.allKinds())).isFalse();
+		assertThat(masks.isNeighbour(1, 131, masks.allKinds())).isFalse();
+	}
+
+	@Test
+	public void testStepMatchesEdgesFrom() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		for (Line line : Line.values()) {
+			for (Node<Integer> node : graph.getNodes()) {
+				long[] from = masks.newSet();
+				from[node.value() >>> 6] |= 1L << node.value();
+				long[] into = masks.newSet();
+				masks.step(from, masks.kind(line), null, into);
+				BitSet expected = new BitSet();
+				for (Edge<Integer, Line> edge : graph.getEdgesFrom(node))
+					if (edge.data() == line) expected.set(edge.destination().value());
+				assertThat(BitSet.valueOf(into)).as("%s from %s", line, node).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	public void testStepFromSetSkipsBlockedNodes() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		long[] from = masks.newSet();
+		from[0] = 1L << 1 | 1L << 2;
+		long[] blocked = masks.newSet();
+		blocked[130 >>> 6] |= 1L << 130;
+		long[] into = masks.newSet();
+		masks.step(from, masks.allKinds(), blocked, into);
+		BitSet expected = new BitSet();
+		expected.set(1);
+		expected.set(2);
+		expected.set(70);
+		assertThat(BitSet.valueOf(into)).isEqualTo(expected);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStepIntoSameSetThrows() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		long[] set = masks.newSet();
+		masks.step(set, masks.allKinds(), null, set);
+	}
+
+	@Test
+	public void testReachableMatchesEveryRoute() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		int[][] budgets = { { 0, 0, 0, 0 }, { 1, 0, 0, 0 }, { 2, 1, 0, 0 }, { 1, 1, 1, 0 },
+				{ 3, 3, 3, 3 } };
+		int[] wildcardKinds = { 0, masks.kind(Line.Blue), masks.allKinds() };
+		long[] blocked = masks.newSet();
+		blocked[70 >>> 6] |= 1L << 70;
+		for (Node<Integer> node : graph.getNodes()) {
+			long[] from = masks.newSet();
+			from[node.value() >>> 6] |= 1L << node.value();
+			for (int[] budget : budgets)
+				for (int wildcards = 0; wildcards <= 2; wildcards++)
+					for (int kinds : wildcardKinds)
+						for (int steps = 0; steps <= 4; steps++)
+							for (long[] block : new long[][] { null, blocked })
+								for (boolean within : new boolean[] { false, true }) {
+									long[] into = masks.newSet();
+									masks.reachable(from, budget, wildcards, kinds, steps, block,
+											within, into);
+									BitSet expected = new BitSet();
+									if (within || steps == 0) expected.set(node.value());
+									routes(node, budget.clone(), wildcards, kinds, steps, block,
+											within, expected);
+									assertThat(BitSet.valueOf(into))
+											.as("%s, %s, %s wildcards, %s steps", node,
+													Arrays.toString(budget), wildcards, steps)
+											.isEqualTo(expected);
+								}
+		}
+	}
+
+	@Test
+	public void testReachableFromSetIsUnionOfNodes() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		int[] budget = { 2, 1, 1, 0 };
+		long[] from = masks.newSet();
+		long[] union = masks.newSet();
+		for (int value : new int[] { 1, 70 }) {
+			from[value >>> 6] |= 1L << value;
+			long[] single = masks.newSet();
+			single[value >>> 6] |= 1L << value;
+			long[] into = masks.newSet();
+			masks.reachable(single, budget, 0, 0, 2, null, false, into);
+			for (int word = 0; word < union.length; word++) union[word] |= into[word];
+		}
+		long[] into = masks.newSet();
+		masks.reachable(from, budget, 0, 0, 2, null, false, into);
+		assertThat(into).isEqualTo(union);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReachableIntoSameSetThrows() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		long[] set = masks.newSet();
+		masks.reachable(set, new int[4], 0, 0, 1, null, false, set);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReachableWrongBudgetLengthThrows() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		masks.reachable(masks.newSet(), new int[3], 0, 0, 1, null, false, masks.newSet());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReachableNegativeStepsThrows() {
+		NeighbourMasks<Line> masks = NeighbourMasks.of(graph, Line.class);
+		masks.reachable(masks.newSet(), new int[4], 0, 0, -1, null, false, masks.newSet());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeNodeValueThrows() {
+		graph.addNode(new Node<>(-1));
+		NeighbourMasks.of(graph, Line.class);
+	}
+
+	// Every route edge by edge, paying each edge from its kind's budget or a wildcard
+	private void routes(Node<Integer> node, int[] budget, int wildcards, int wildcardKinds,
+			int steps, long[] blocked, boolean within, BitSet into) {
+		if (steps == 0) return;
+		for (Edge<Integer, Line> edge : graph.getEdgesFrom(node)) {
+			int to = edge.destination().value();
+			if (blocked != null && (blocked[to >>> 6] & 1L << to) != 0) continue;
+			int ordinal = edge.data().ordinal();
+			if (budget[ordinal] > 0) {
+				budget[ordinal]--;
+				visit(edge.destination(), budget, wildcards, wildcardKinds, steps, blocked,
+						within, into);
+				budget[ordinal]++;
+			}
+			if (wildcards > 0 && (wildcardKinds & 1 << ordinal) != 0)
+				visit(edge.destination(), budget, wildcards - 1, wildcardKinds, steps, blocked,
+						within, into);
+		}
+	}
+
+	private void visit(Node<Integer> node, int[] budget, int wildcards, int wildcardKinds,
+			int steps, long[] blocked, boolean within, BitSet into) {
+		if (within || steps == 1) into.set(node.value());
+		routes(node, budget, wildcards, wildcardKinds, steps - 1, blocked, within, into);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGraphTooLargeForOneArrayThrows() {
+		// 200001 nodes need 200001 * 4 kinds * 3126 words, more than an int
+		// holds; the check must come before anything is allocated
+		graph.addNode(new Node<>(200_000));
+		NeighbourMasks.of(graph, Line.class);
+	}
+
+}
@@ -0,0 +1,94 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link UndirectedGraph}
+ */
+@SuppressWarnings("unchecked")
+public class UndirectedGraphTest {
+
+	private static UndirectedGraph<Integer, String> pair() {
+		UndirectedGraph<Integer, String> graph = new UndirectedGraph<>();
+		graph.addNode(new Node<>(1));
+		graph.addNode(new Node<>(2));
+		graph.addEdge(new Edge<>(graph.getNode(1), graph.getNode(2), "road"));
+		return graph;
+	}
+
+	@Test
+	public void testAddEdgeAddsBothDirections() {
+		UndirectedGraph<Integer, String> graph = pair();
+		assertThat(graph.getEdges()).containsExactly(
+				new Edge<>(new Node<>(1), new Node<>(2), "road"),
+				new Edge<>(new Node<>(2), new Node<>(1), "road"));
+		assertThat(graph.getEdgesFrom(graph.getNode(2)))
+				.containsExactly(new Edge<>(new Node<>(2), new Node<>(1), "road"));
+	}
+
+	@Test
+	public void testEdgesOfUnknownNodeAreEmpty() {
+		UndirectedGraph<Integer, String> graph = pair();
+		assertThat(graph.getEdgesFrom(new Node<>(3))).isEmpty();
+		assertThat(graph.getEdgesTo(new Node<>(3))).isEmpty();
+	}
+
+	@Test
+	public void testEdgesOfEmptyGraphAreEmpty() {
+		assertThat(new UndirectedGraph<Integer, String>().getEdgesFrom(new Node<>(1))).isEmpty();
+	}
+
+	@Test
+	public void testEdgeListsAreReused() {
+		UndirectedGraph<Integer, String> graph = pair();
+		assertThat(graph.getEdgesFrom(graph.getNode(1)))
+				.isSameAs(graph.getEdgesFrom(graph.getNode(1)));
+		assertThat(graph.getNodes()).isSameAs(graph.getNodes());
+	}
+
+	@Test
+	public void testViewsShowLaterAdditions() {
+		UndirectedGraph<Integer, String> graph = pair();
+		List<Node<Integer>> nodes = graph.getNodes();
+		Collection<Edge<Integer, String>> edges = graph.getEdges();
+		Collection<Edge<Integer, String>> from = graph.getEdgesFrom(graph.getNode(1));
+		graph.addNode(new Node<>(3));
+		graph.addEdge(new Edge<>(graph.getNode(1), graph.getNode(3), "rail"));
+		assertThat(nodes).containsExactly(new Node<>(1), new Node<>(2), new Node<>(3));
+		assertThat(edges).hasSize(4);
+		assertThat(from).containsExactly(new Edge<>(new Node<>(1), new Node<>(2), "road"),
+				new Edge<>(new Node<>(1), new Node<>(3), "rail"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testEdgesFromIsReadOnly() {
+		UndirectedGraph<Integer, String> graph = pair();
+		graph.getEdgesFrom(graph.getNode(1)).clear();
+	}
+
+	@Test
+	public void testCopyHasSameNodesAndEdges() {
+		UndirectedGraph<Integer, String> graph = pair();
+		UndirectedGraph<Integer, String> copy = new UndirectedGraph<>(graph);
+		assertThat(copy).isEqualTo(graph);
+		assertThat(copy.getEdgesFrom(copy.getNode(1)))
+				.containsExactlyElementsOf(graph.getEdgesFrom(graph.getNode(1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateNodeThrows() {
+		pair().addNode(new Node<>(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEdgeToMissingNodeThrows() {
+		UndirectedGraph<Integer, String> graph = pair();
+		graph.addEdge(new Edge<>(graph.getNode(1), new Node<>(3), "road"));
+	}
+
+}
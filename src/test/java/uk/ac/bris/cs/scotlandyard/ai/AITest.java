@@ -0,0 +1,16 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Includes all tests for the AI search structures
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+		GameStateTest.class,
+		JointMovesTest.class,
+		ReachabilityTest.class,
+		TablebaseTest.class,
+		TranspositionTableTest.class })
+public class AITest {}
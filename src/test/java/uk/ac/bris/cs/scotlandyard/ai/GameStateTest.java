@@ -0,0 +1,344 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Black;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Blue;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Green;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Red;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.White;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Yellow;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.Bus;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.Secret;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.Taxi;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.Underground;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Tests for {@link GameState}, replaying the recorded games of the model
+ * play-out tests through a {@link ScotlandYardModel} and a state side by side
+ */
+public class GameStateTest {
+
+	private static final Set<Integer> REVEAL = new HashSet<>(Arrays.asList(3, 8, 13, 18, 23));
+
+	private static Graph<Integer, Transport> graph;
+
+	@BeforeClass
+	public static void setUp() throws IOException, URISyntaxException {
+		graph = ScotlandYardGraphReader.fromLines(Files.readAllLines(
+				Paths.get(GameStateTest.class.getResource("/game_graph.txt").toURI())));
+	}
+
+	@Test
+	public void testTwoPlayerMrXWon() {
+		new Replay()
+				.player(Black, 172, x2(Black, Secret, 187, Secret, 188),
+						x2(Black, Taxi, 128, Bus, 199), ticket(Black, Secret, 161),
+						ticket(Black, Secret, 135), ticket(Black, Taxi, 136),
+						ticket(Black, Taxi, 162), ticket(Black, Taxi, 175),
+						ticket(Black, Taxi, 174), ticket(Black, Secret, 175),
+						ticket(Black, Taxi, 174), ticket(Black, Taxi, 173),
+						ticket(Black, Taxi, 171), ticket(Black, Taxi, 173))
+				.player(Blue, 141, ticket(Blue, Taxi, 142), ticket(Blue, Taxi, 128),
+						ticket(Blue, Taxi, 188), ticket(Blue, Taxi, 128), ticket(Blue, Bus, 135),
+						ticket(Blue, Taxi, 136), ticket(Blue, Taxi, 119), ticket(Blue, Taxi, 136),
+						ticket(Blue, Taxi, 119), ticket(Blue, Taxi, 107), ticket(Blue, Bus, 161),
+						ticket(Blue, Taxi, 174), ticket(Blue, Taxi, 175))
+				.play(13, Black);
+	}
+
+	@Test
+	public void testTwoPlayerDetectiveWon() {
+		new Replay()
+				.player(Black, 104, x2(Black, Taxi, 116, Bus, 108),
+						x2(Black, Bus, 116, Secret, 104), ticket(Black, Secret, 116))
+				.player(Blue, 53, ticket(Blue, Taxi, 69), ticket(Blue, Taxi, 86),
+						ticket(Blue, Bus, 116))
+				.play(3, Blue);
+	}
+
+	@Test
+	public void testSixPlayerDetectiveWon() {
+		new Replay()
+				.player(Black, 127, x2(Black, Secret, 116, Secret, 127),
+						x2(Black, Bus, 133, Secret, 141), ticket(Black, Taxi, 158),
+						ticket(Black, Taxi, 142), ticket(Black, Bus, 157),
+						ticket(Black, Taxi, 170), ticket(Black, Taxi, 159),
+						ticket(Black, Secret, 172), ticket(Black, Secret, 187),
+						ticket(Black, Taxi, 172), ticket(Black, Taxi, 128))
+				.player(Blue, 53, ticket(Blue, Taxi, 69), ticket(Blue, Taxi, 86),
+						ticket(Blue, Bus, 116), ticket(Blue, Taxi, 127), ticket(Blue, Bus, 133),
+						ticket(Blue, Bus, 157), ticket(Blue, Bus, 133), ticket(Blue, Taxi, 140),
+						ticket(Blue, Taxi, 156), ticket(Blue, Taxi, 140),
+						ticket(Blue, Underground, 128))
+				.player(Green, 94, ticket(Green, Bus, 77), ticket(Green, Taxi, 78),
+						ticket(Green, Bus, 79), ticket(Green, Underground, 67),
+						ticket(Green, Underground, 89), ticket(Green, Underground, 128),
+						ticket(Green, Bus, 187), ticket(Green, Bus, 185),
+						ticket(Green, Taxi, 170), ticket(Green, Taxi, 159))
+				.player(Red, 155, ticket(Red, Taxi, 156), ticket(Red, Taxi, 140),
+						ticket(Red, Bus, 133), ticket(Red, Taxi, 141), ticket(Red, Taxi, 158),
+						ticket(Red, Taxi, 142), ticket(Red, Bus, 157), ticket(Red, Bus, 133),
+						ticket(Red, Taxi, 141), ticket(Red, Taxi, 158))
+				.player(White, 29, ticket(White, Taxi, 42), ticket(White, Taxi, 72),
+						ticket(White, Bus, 105), ticket(White, Taxi, 108),
+						ticket(White, Taxi, 119), ticket(White, Taxi, 108),
+						ticket(White, Taxi, 119), ticket(White, Taxi, 108),
+						ticket(White, Taxi, 119), ticket(White, Taxi, 136))
+				.player(Yellow, 123, ticket(Yellow, Taxi, 137), ticket(Yellow, Taxi, 123),
+						ticket(Yellow, Taxi, 124), ticket(Yellow, Bus, 111),
+						ticket(Yellow, Underground, 153), ticket(Yellow, Underground, 185),
+						ticket(Yellow, Taxi, 170), ticket(Yellow, Taxi, 157),
+						ticket(Yellow, Bus, 185), ticket(Yellow, Bus, 187))
+				.play(11, Blue, Green, Red, White, Yellow);
+	}
+
+	@Test
+	public void testSixPlayerMrXWon() {
+		new Replay()
+				.player(Black, 45, ticket(Black, Taxi, 46), x2(Black, Taxi, 45, Secret, 58),
+						x2(Black, Taxi, 45, Secret, 58), ticket(Black, Secret, 77),
+						ticket(Black, Secret, 58), ticket(Black, Secret, 77),
+						ticket(Black, Bus, 58), ticket(Black, Bus, 46), ticket(Black, Bus, 58),
+						ticket(Black, Bus, 46), ticket(Black, Bus, 58), ticket(Black, Bus, 46),
+						ticket(Black, Underground, 74), ticket(Black, Underground, 46),
+						ticket(Black, Underground, 74), ticket(Black, Bus, 94),
+						ticket(Black, Bus, 77), ticket(Black, Bus, 58), ticket(Black, Bus, 46))
+				.player(Blue, 91, ticket(Blue, Taxi, 90), ticket(Blue, Taxi, 72),
+						ticket(Blue, Taxi, 90), ticket(Blue, Taxi, 105), ticket(Blue, Taxi, 89),
+						ticket(Blue, Taxi, 71), ticket(Blue, Taxi, 70), ticket(Blue, Taxi, 54),
+						ticket(Blue, Taxi, 70), ticket(Blue, Taxi, 54), ticket(Blue, Taxi, 41),
+						ticket(Blue, Bus, 29), ticket(Blue, Bus, 41), ticket(Blue, Bus, 87),
+						ticket(Blue, Bus, 41), ticket(Blue, Bus, 29), ticket(Blue, Bus, 15),
+						ticket(Blue, Bus, 41), ticket(Blue, Bus, 15))
+				.player(Green, 112, ticket(Green, Taxi, 125), ticket(Green, Taxi, 131),
+						ticket(Green, Taxi, 114), ticket(Green, Taxi, 131),
+						ticket(Green, Taxi, 125), ticket(Green, Taxi, 113),
+						ticket(Green, Taxi, 100), ticket(Green, Taxi, 113),
+						ticket(Green, Taxi, 100), ticket(Green, Bus, 82), ticket(Green, Bus, 100),
+						ticket(Green, Bus, 63), ticket(Green, Taxi, 64), ticket(Green, Taxi, 81),
+						pass(Green), pass(Green), pass(Green), pass(Green), pass(Green))
+				.player(Red, 103, ticket(Red, Taxi, 86), ticket(Red, Taxi, 103),
+						ticket(Red, Taxi, 86), ticket(Red, Taxi, 104), ticket(Red, Taxi, 116),
+						ticket(Red, Bus, 142), ticket(Red, Taxi, 141), ticket(Red, Taxi, 133),
+						ticket(Red, Taxi, 127), ticket(Red, Taxi, 126), ticket(Red, Taxi, 140),
+						ticket(Red, Taxi, 139), pass(Red), pass(Red), pass(Red), pass(Red),
+						pass(Red), pass(Red), pass(Red))
+				.player(White, 155, ticket(White, Taxi, 167), ticket(White, Taxi, 168),
+						ticket(White, Taxi, 155), ticket(White, Taxi, 167),
+						ticket(White, Taxi, 183), ticket(White, Taxi, 166),
+						ticket(White, Taxi, 183), ticket(White, Taxi, 166),
+						ticket(White, Taxi, 183), ticket(White, Taxi, 196),
+						ticket(White, Taxi, 184), ticket(White, Bus, 185), ticket(White, Bus, 187),
+						ticket(White, Bus, 185), ticket(White, Bus, 184), ticket(White, Bus, 153),
+						ticket(White, Bus, 184), ticket(White, Bus, 156), ticket(White, Bus, 157))
+				.player(Yellow, 117, ticket(Yellow, Taxi, 129), ticket(Yellow, Taxi, 117),
+						ticket(Yellow, Taxi, 116), ticket(Yellow, Bus, 86),
+						ticket(Yellow, Taxi, 69), ticket(Yellow, Taxi, 52),
+						ticket(Yellow, Bus, 41), ticket(Yellow, Bus, 87), ticket(Yellow, Bus, 41),
+						ticket(Yellow, Taxi, 40), ticket(Yellow, Taxi, 52),
+						ticket(Yellow, Bus, 67), ticket(Yellow, Bus, 82),
+						ticket(Yellow, Taxi, 101), ticket(Yellow, Taxi, 114),
+						ticket(Yellow, Taxi, 131), ticket(Yellow, Taxi, 114), pass(Yellow),
+						pass(Yellow))
+				.play(19, Black);
+	}
+
+	@Test
+	public void testStuckDetectivesEndTheGameOnlyAfterTheRotation() {
+		// Blue spends its last ticket with Green, who has none, still to move
+		new Replay().player(Black, 45, ticket(Black, Taxi, 46))
+				.player(Blue, 91, tickets(1, 0, 0, 0, 0), ticket(Blue, Taxi, 105))
+				.player(Green, 29, tickets(0, 0, 0, 0, 0), pass(Green))
+				.play(1, Black);
+	}
+
+	@Test
+	public void testUndoRestoresStartingState() {
+		Replay replay = new Replay().player(Black, 45).player(Blue, 91).player(Red, 103);
+		GameState state = replay.state();
+		String start = describe(state);
+		long[] moves = new long[state.maxMoves()];
+		// play the first move of every player in turn, then unwind it all
+		for (int depth = 0; depth < 6; depth++) {
+			assertThat(state.moves(moves)).isPositive();
+			state.play(moves[0]);
+		}
+		for (int depth = 0; depth < 6; depth++)
+			state.undo();
+		assertThat(describe(state)).isEqualTo(start);
+		assertThat(state.depth()).isZero();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUndoWithNothingPlayedThrows() {
+		new Replay().player(Black, 45).player(Blue, 91).state().undo();
+	}
+
+	private static TicketMove ticket(Colour colour, Ticket ticket, int destination) {
+		return new TicketMove(colour, ticket, destination);
+	}
+
+	private static DoubleMove x2(Colour colour, Ticket first, int firstDestination,
+			Ticket second, int secondDestination) {
+		return new DoubleMove(colour, first, firstDestination, second, secondDestination);
+	}
+
+	private static PassMove pass(Colour colour) {
+		return new PassMove(colour);
+	}
+
+	// Everything undo() must restore: round, current player, locations and
+	// tickets, which toString() lists, and the hash
+	private static String describe(GameState state) {
+		return state + "#" + state.hash();
+	}
+
+	/**
+	 * A game with recorded moves, played through a model whose players check
+	 * a {@link GameState} against it before every move
+	 */
+	private static final class Replay {
+
+		private final List<PlayerConfiguration> players = new ArrayList<>();
+		private final Map<Colour, Deque<Move>> recorded = new EnumMap<>(Colour.class);
+		private ScotlandYardModel model;
+		private GameState state;
+		private ZobristKeys keys;
+
+		Replay player(Colour colour, int location, Move... moves) {
+			return player(colour, location,
+					colour == Black ? tickets(4, 3, 3, 2, 5) : tickets(11, 8, 4, 0, 0), moves);
+		}
+
+		Replay player(Colour colour, int location, Map<Ticket, Integer> tickets, Move... moves) {
+			recorded.put(colour, new ArrayDeque<>(Arrays.asList(moves)));
+			players.add(new PlayerConfiguration.Builder(colour).using(new Checker())
+					.with(tickets).at(location).build());
+			return this;
+		}
+
+		GameState state() {
+			if (model != null) return state;
+			List<Boolean> rounds = new ArrayList<>();
+			for (int round = 1; round <= 24; round++)
+				rounds.add(REVEAL.contains(round));
+			PlayerConfiguration mrX = players.get(0);
+			model = new ScotlandYardModel(rounds, graph, mrX, players.get(1),
+					players.subList(2, players.size()).toArray(new PlayerConfiguration[0]));
+			state = GameState.of(model, mrX.location);
+			keys = ZobristKeys.of(state);
+			state.hashWith(keys);
+			return state;
+		}
+
+		void play(int rotations, Colour... winners) {
+			GameState state = state();
+			for (int rotation = 0; rotation < rotations; rotation++) {
+				assertThat(model.isGameOver()).isFalse();
+				model.startRotate();
+				if (!model.isGameOver()) assertThat(state.isGameOver())
+						.as("Game over after rotation %s in %s", rotation, state).isFalse();
+			}
+			assertThat(model.isGameOver()).isTrue();
+			assertThat(model.getWinningPlayers()).containsOnly(winners);
+			assertThat(state.isGameOver()).isTrue();
+			assertThat(state.isMrXWinner()).isEqualTo(model.getWinningPlayers().contains(Black));
+			recorded.values().forEach(moves -> assertThat(moves).isEmpty());
+		}
+
+		private void check(ScotlandYardView view, int location, Set<Move> valid) {
+			// The model only asks for a move while the game goes on
+			assertThat(state.isGameOver()).as("Game over in %s", state).isFalse();
+			Colour colour = view.getCurrentPlayer();
+			int current = state.currentPlayer();
+			assertThat(state.colour(current)).isEqualTo(colour);
+			assertThat(state.location(current)).isEqualTo(location);
+			assertThat(state.round()).isEqualTo(view.getCurrentRound());
+			for (int player = 0; player < state.players(); player++) {
+				Colour other = state.colour(player);
+				if (player != GameState.MRX)
+					assertThat(state.location(player)).isEqualTo(view.getPlayerLocation(other));
+				for (Ticket ticket : Ticket.values())
+					assertThat(state.tickets(player, ticket)).as("%s %s", other, ticket)
+							.isEqualTo(view.getPlayerTickets(other, ticket));
+			}
+
+			long[] moves = new long[state.maxMoves()];
+			int count = state.moves(moves);
+			Set<Move> generated = new HashSet<>();
+			for (int i = 0; i < count; i++)
+				generated.add(PackedMove.unpack(colour, moves[i]));
+			assertThat(generated).as("Moves of %s", state).isEqualTo(valid);
+			assertThat(count).isEqualTo(generated.size());
+
+			String before = describe(state);
+			for (int i = 0; i < count; i++) {
+				state.play(moves[i]);
+				assertThat(state.hash()).as("Hash after %s", PackedMove.toString(moves[i]))
+						.isEqualTo(state.copy().hashWith(keys).hash());
+				state.undo();
+				assertThat(describe(state)).as("Undo of %s", PackedMove.toString(moves[i]))
+						.isEqualTo(before);
+			}
+		}
+
+		private final class Checker implements Player {
+
+			@Override
+			public void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+					Consumer<Move> callback) {
+				check(view, location, moves);
+				Move move = recorded.get(view.getCurrentPlayer()).poll();
+				assertThat(moves).as("Recorded move %s", move).contains(move);
+				state.play(move);
+				callback.accept(move);
+			}
+		}
+	}
+
+	private static Map<Ticket, Integer> tickets(int taxi, int bus, int underground, int x2,
+			int secret) {
+		Map<Ticket, Integer> map = new HashMap<>();
+		map.put(Ticket.Taxi, taxi);
+		map.put(Ticket.Bus, bus);
+		map.put(Ticket.Underground, underground);
+		map.put(Ticket.Double, x2);
+		map.put(Ticket.Secret, secret);
+		return map;
+	}
+
+}
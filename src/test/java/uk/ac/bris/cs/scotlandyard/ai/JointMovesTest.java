@@ -0,0 +1,177 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * Tests for {@link JointMoves}
+ */
+@SuppressWarnings("unchecked")
+public class JointMovesTest {
+
+	private static final long PASS = PackedMove.PASS;
+
+	@Test
+	public void testSingleDetectiveYieldsEveryMove() {
+		long[][] moves = { { taxi(1), taxi(2), taxi(3) } };
+		assertThat(enumerate(moves)).isEqualTo(product(moves));
+		assertThat(enumerate(moves)).hasSize(3);
+	}
+
+	@Test
+	public void testCollidingCombinationsAreSkipped() {
+		long[][] moves = { { taxi(1), taxi(2) }, { taxi(2), taxi(3) }, { taxi(1), taxi(3) } };
+		List<List<Long>> combinations = enumerate(moves);
+		assertThat(combinations).containsExactly(
+				Arrays.asList(taxi(1), taxi(2), taxi(3)),
+				Arrays.asList(taxi(1), taxi(3), PASS),
+				Arrays.asList(taxi(2), taxi(3), taxi(1)));
+		assertThat(combinations).isEqualTo(product(moves));
+	}
+
+	@Test
+	public void testPassOnlyDetectivesNeverCollide() {
+		long[][] moves = { { PASS }, { taxi(1), taxi(2) }, { PASS }, { taxi(2), taxi(4) } };
+		List<List<Long>> combinations = enumerate(moves);
+		assertThat(combinations).containsExactly(
+				Arrays.asList(PASS, taxi(1), PASS, taxi(2)),
+				Arrays.asList(PASS, taxi(1), PASS, taxi(4)),
+				Arrays.asList(PASS, taxi(2), PASS, taxi(4)));
+		assertThat(combinations).isEqualTo(product(moves));
+	}
+
+	@Test
+	public void testAllPassYieldsOneCombination() {
+		long[][] moves = { { PASS }, { PASS }, { PASS } };
+		assertThat(enumerate(moves)).containsExactly(Arrays.asList(PASS, PASS, PASS));
+	}
+
+	@Test
+	public void testDetectivePassesWhenEveryChoiceCollides() {
+		long[][] moves = { { taxi(7) }, { taxi(7), bus(7) } };
+		assertThat(enumerate(moves)).containsExactly(Arrays.asList(taxi(7), PASS));
+	}
+
+	@Test
+	public void testDetectivePassesOnlyBehindBlockingMoves() {
+		long[][] moves = { { taxi(7), taxi(8) }, { taxi(7) }, { taxi(8), bus(7) } };
+		assertThat(enumerate(moves)).containsExactly(
+				Arrays.asList(taxi(7), PASS, taxi(8)),
+				Arrays.asList(taxi(8), taxi(7), PASS));
+	}
+
+	@Test
+	public void testRandomMovesMatchCartesianProduct() {
+		Random random = new Random(42);
+		JointMoves[] joints = new JointMoves[6]; // reused, one per detective count
+		for (int detectives = 1; detectives < joints.length; detectives++)
+			joints[detectives] = new JointMoves(detectives, 8);
+		for (int trial = 0; trial < 200; trial++) {
+			int detectives = 1 + random.nextInt(5);
+			long[][] moves = new long[detectives][];
+			for (int detective = 0; detective < detectives; detective++) {
+				if (random.nextInt(4) == 0) {
+					moves[detective] = new long[] { PASS };
+					continue;
+				}
+				// few destinations, so collisions are common
+				moves[detective] = new long[1 + random.nextInt(8)];
+				for (int i = 0; i < moves[detective].length; i++)
+					moves[detective][i] = random.nextBoolean() ? taxi(1 + random.nextInt(6))
+							: bus(1 + random.nextInt(6));
+			}
+			assertThat(enumerate(joints[detectives], moves)).as("Trial %s", trial)
+					.isEqualTo(product(moves));
+		}
+	}
+
+	@Test
+	public void testCapturesChecksEveryDestination() {
+		JointMoves joint = fill(new JointMoves(3, 2),
+				new long[][] { { PASS }, { taxi(5) }, { bus(9) } });
+		assertThat(joint.next()).isTrue();
+		assertThat(joint.captures(9)).isTrue();
+		assertThat(joint.captures(5)).isTrue();
+		assertThat(joint.captures(1)).isFalse();
+	}
+
+	private static long taxi(int destination) {
+		return PackedMove.ticketMove(Ticket.Taxi, destination);
+	}
+
+	private static long bus(int destination) {
+		return PackedMove.ticketMove(Ticket.Bus, destination);
+	}
+
+	private static JointMoves fill(JointMoves joint, long[][] moves) {
+		joint.reset();
+		for (int detective = 0; detective < moves.length; detective++) {
+			System.arraycopy(moves[detective], 0, joint.moves(detective), 0,
+					moves[detective].length);
+			joint.count(detective, moves[detective].length);
+		}
+		return joint;
+	}
+
+	private static List<List<Long>> enumerate(long[][] moves) {
+		int most = Arrays.stream(moves).mapToInt(m -> m.length).max().orElse(1);
+		return enumerate(new JointMoves(moves.length, most), moves);
+	}
+
+	// The combinations in the order next() visits them, on a reused instance
+	private static List<List<Long>> enumerate(JointMoves joint, long[][] moves) {
+		fill(joint, moves);
+		List<List<Long>> combinations = new ArrayList<>();
+		while (joint.next()) {
+			List<Long> combination = new ArrayList<>();
+			for (int detective = 0; detective < moves.length; detective++)
+				combination.add(joint.move(detective));
+			combinations.add(combination);
+		}
+		assertThat(joint.next()).isFalse();
+		return combinations;
+	}
+
+	// The cartesian product with the last detective turning fastest, less
+	// combinations where two detectives that move share a destination; a
+	// detective with no choice left after the ones before it passes
+	private static List<List<Long>> product(long[][] moves) {
+		List<List<Long>> combinations = new ArrayList<>();
+		combinations.add(new ArrayList<>());
+		for (long[] choices : moves) {
+			List<List<Long>> extended = new ArrayList<>();
+			for (List<Long> combination : combinations) {
+				Set<Integer> taken = new HashSet<>();
+				for (long move : combination)
+					if (!PackedMove.isPass(move)) taken.add(PackedMove.destination(move));
+				int before = extended.size();
+				for (long move : choices) {
+					if (!PackedMove.isPass(move) && taken.contains(PackedMove.destination(move)))
+						continue;
+					List<Long> longer = new ArrayList<>(combination);
+					longer.add(move);
+					extended.add(longer);
+				}
+				if (extended.size() == before) {
+					List<Long> longer = new ArrayList<>(combination);
+					longer.add(PASS);
+					extended.add(longer);
+				}
+			}
+			combinations = extended;
+		}
+		return combinations;
+	}
+
+}
@@ -0,0 +1,153 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.NeighbourMasks;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Tests that {@link NeighbourMasks#reachable} under a player's tickets gives
+ * the destinations of {@link GameState}'s move generation on the standard map
+ */
+public class ReachabilityTest {
+
+	private static final Player IDLE = (view, location, moves, callback) -> {};
+	private static final Colour[] COLOURS = Colour.values();
+
+	private static Graph<Integer, Transport> graph;
+	private static NeighbourMasks<Transport> masks;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		try (InputStream stream = ReachabilityTest.class.getResourceAsStream("/graph.txt")) {
+			graph = ScotlandYardGraphReader.fromStream(stream);
+		}
+		masks = NeighbourMasks.of(graph, Transport.class);
+	}
+
+	@Test
+	public void testMrXSingleAndDoubleDestinations() {
+		Random random = new Random(7);
+		long[] buffer = new long[1 << 14];
+		for (int trial = 0; trial < 300; trial++) {
+			GameState state = randomState(random);
+			int singles = state.singleMoves(GameState.MRX, state.location(GameState.MRX), buffer,
+					0);
+			BitSet expected = new BitSet();
+			for (int i = 0; i < singles; i++)
+				expected.set(PackedMove.destination(buffer[i]));
+			assertThat(mrXReachable(state, 1)).as("Trial %s singles", trial)
+					.isEqualTo(expected);
+
+			int doubles = state.doubleMoves(buffer, singles);
+			expected.clear();
+			for (int i = singles; i < singles + doubles; i++)
+				expected.set(PackedMove.finalDestination(buffer[i]));
+			assertThat(mrXReachable(state, 2)).as("Trial %s doubles", trial)
+					.isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testDetectiveDestinations() {
+		Random random = new Random(11);
+		long[] buffer = new long[1 << 10];
+		for (int trial = 0; trial < 300; trial++) {
+			GameState state = randomState(random);
+			for (int detective = 1; detective < state.players(); detective++) {
+				int count = state.singleMoves(detective, state.location(detective), buffer, 0);
+				BitSet expected = new BitSet();
+				for (int i = 0; i < count; i++)
+					expected.set(PackedMove.destination(buffer[i]));
+
+				long[] from = set(state.location(detective));
+				long[] blocked = masks.newSet();
+				for (int other = 1; other < state.players(); other++)
+					blocked[state.location(other) >>> 6] |= 1L << state.location(other);
+				long[] into = masks.newSet();
+				masks.reachable(from, budget(state, detective), 0, 0, 1, blocked, false, into);
+				assertThat(BitSet.valueOf(into)).as("Trial %s detective %s", trial, detective)
+						.isEqualTo(expected);
+			}
+		}
+	}
+
+	// A secret ticket pays for a boat, or for any other edge whose ticket Mr.X holds
+	private static BitSet mrXReachable(GameState state, int steps) {
+		int[] budget = budget(state, GameState.MRX);
+		int wildcardKinds = masks.kind(Transport.Boat);
+		for (Transport transport : Transport.values())
+			if (budget[transport.ordinal()] > 0) wildcardKinds |= masks.kind(transport);
+		long[] blocked = masks.newSet();
+		for (int detective = 1; detective < state.players(); detective++)
+			blocked[state.location(detective) >>> 6] |= 1L << state.location(detective);
+		long[] into = masks.newSet();
+		masks.reachable(set(state.location(GameState.MRX)), budget,
+				state.tickets(GameState.MRX, Ticket.Secret), wildcardKinds, steps, blocked, false,
+				into);
+		return BitSet.valueOf(into);
+	}
+
+	// Edges of each transport the player's own tickets pay for; boats only take secrets
+	private static int[] budget(GameState state, int player) {
+		int[] budget = new int[Transport.values().length];
+		for (Transport transport : Transport.values())
+			if (transport != Transport.Boat)
+				budget[transport.ordinal()] = state.tickets(player,
+						Ticket.fromTransport(transport));
+		return budget;
+	}
+
+	private static long[] set(int node) {
+		long[] set = masks.newSet();
+		set[node >>> 6] |= 1L << node;
+		return set;
+	}
+
+	// Random locations and few tickets, so running out of a kind is common
+	private static GameState randomState(Random random) {
+		int players = 2 + random.nextInt(5);
+		List<Integer> locations = new ArrayList<>();
+		for (int value = 1; value <= graph.size(); value++)
+			locations.add(value);
+		Collections.shuffle(locations, random);
+		List<PlayerConfiguration> configurations = new ArrayList<>();
+		for (int player = 0; player < players; player++) {
+			Map<Ticket, Integer> tickets = new HashMap<>();
+			tickets.put(Ticket.Taxi, random.nextInt(3));
+			tickets.put(Ticket.Bus, random.nextInt(3));
+			tickets.put(Ticket.Underground, random.nextInt(3));
+			tickets.put(Ticket.Double, player == 0 ? 1 : 0);
+			tickets.put(Ticket.Secret, player == 0 ? random.nextInt(3) : 0);
+			configurations.add(new PlayerConfiguration.Builder(COLOURS[player]).using(IDLE)
+					.with(tickets).at(locations.get(player)).build());
+		}
+		ScotlandYardModel model = new ScotlandYardModel(
+				new ArrayList<>(Collections.nCopies(24, false)), graph, configurations.get(0),
+				configurations.get(1), configurations.subList(2, players)
+						.toArray(new PlayerConfiguration[0]));
+		return GameState.of(model, locations.get(0));
+	}
+
+}
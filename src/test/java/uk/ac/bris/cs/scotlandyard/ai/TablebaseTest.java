@@ -0,0 +1,213 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Black;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.Blue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Tests for {@link Tablebase} and {@link TablebaseGenerator}, checking a table
+ * for one detective on a small map against a brute-force minimax of the same
+ * game
+ */
+public class TablebaseTest {
+
+	private static final int NODES = 9;
+	private static final int ROUNDS = 4;
+	private static final Player IDLE = (view, location, moves, callback) -> {};
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private UndirectedGraph<Integer, Transport> graph;
+	private Tablebase tablebase;
+
+	@Before
+	public void setUp() throws IOException {
+		graph = new UndirectedGraph<>();
+		for (int value = 1; value <= NODES; value++)
+			graph.addNode(new Node<>(value));
+		for (int value = 1; value <= 6; value++)
+			edge(value, value % 6 + 1, Transport.Taxi);
+		edge(1, 4, Transport.Bus);
+		edge(2, 5, Transport.Underground);
+		edge(3, 6, Transport.Boat);
+		edge(7, 1, Transport.Taxi); // dead end
+		edge(5, 8, Transport.Taxi);
+		edge(8, 9, Transport.Taxi);
+		Path path = folder.getRoot().toPath().resolve("test.tb");
+		TablebaseGenerator.write(graph, 1, ROUNDS, path);
+		tablebase = Tablebase.load(path, graph);
+	}
+
+	private void edge(int from, int to, Transport transport) {
+		graph.addEdge(new Edge<>(graph.getNode(from), graph.getNode(to), transport));
+	}
+
+	@Test
+	public void testProbeMatchesMinimax() {
+		int wins = 0;
+		int losses = 0;
+		for (int left = 1; left <= ROUNDS; left++) {
+			for (int mrX = 1; mrX <= NODES; mrX++) {
+				for (int detective = 1; detective <= NODES; detective++) {
+					if (mrX == detective) continue;
+					boolean survives = survives(left, mrX, detective);
+					assertThat(tablebase.probe(state(left, left, mrX, detective)))
+							.as("%d rounds left, Mr.X at %d, detective at %d", left, mrX,
+									detective)
+							.isEqualTo(survives ? Tablebase.MRX_WINS : Tablebase.UNKNOWN);
+					if (survives) wins++;
+					else losses++;
+				}
+			}
+		}
+		assertThat(wins).isPositive();
+		assertThat(losses).isPositive();
+	}
+
+	@Test
+	public void testEscapeSurvivesEveryReply() {
+		for (int left = 1; left <= ROUNDS; left++) {
+			for (int mrX = 1; mrX <= NODES; mrX++) {
+				for (int detective = 1; detective <= NODES; detective++) {
+					if (mrX == detective) continue;
+					int escape = tablebase.escape(state(left, left, mrX, detective));
+					if (!survives(left, mrX, detective)) {
+						assertThat(escape).isEqualTo(Tablebase.MISSING);
+						continue;
+					}
+					assertThat(neighbours(mrX, true)).contains(escape);
+					assertThat(escapes(left, escape, detective)).isTrue();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNotEnoughSecretTicketsIsUnknown() {
+		for (int left = 1; left <= ROUNDS; left++)
+			for (int mrX = 1; mrX <= NODES; mrX++)
+				for (int detective = 1; detective <= NODES; detective++)
+					if (mrX != detective)
+						assertThat(tablebase.probe(state(left, left - 1, mrX, detective)))
+								.isEqualTo(Tablebase.UNKNOWN);
+	}
+
+	@Test
+	public void testSecretTicketsWithoutTransportTicketsIsUnknown() {
+		int[][] transports = { { 0, 0, 0 }, { 0, 3, 3 }, { 4, 0, 3 }, { 4, 3, 0 } };
+		for (int[] held : transports)
+			for (int left = 1; left <= ROUNDS; left++)
+				for (int mrX = 1; mrX <= NODES; mrX++)
+					for (int detective = 1; detective <= NODES; detective++)
+						if (mrX != detective)
+							assertThat(tablebase.probe(state(left, held[0], held[1], held[2],
+									5 * ROUNDS, mrX, detective))).isEqualTo(Tablebase.UNKNOWN);
+	}
+
+	@Test
+	public void testOneOfEachTransportTicketIsEnough() {
+		for (int left = 1; left <= ROUNDS; left++)
+			for (int mrX = 1; mrX <= NODES; mrX++)
+				for (int detective = 1; detective <= NODES; detective++)
+					if (mrX != detective)
+						assertThat(tablebase.probe(state(left, 1, 1, 1, left, mrX, detective)))
+								.isEqualTo(survives(left, mrX, detective) ? Tablebase.MRX_WINS
+										: Tablebase.UNKNOWN);
+	}
+
+	@Test
+	public void testTooManyRoundsLeftIsUnknown() {
+		for (int mrX = 1; mrX <= NODES; mrX++)
+			for (int detective = 1; detective <= NODES; detective++)
+				if (mrX != detective)
+					assertThat(tablebase.probe(state(ROUNDS + 1, ROUNDS + 1, mrX, detective)))
+							.isEqualTo(Tablebase.UNKNOWN);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyDetectivesThrows() throws IOException {
+		TablebaseGenerator.write(graph, Tablebase.MAX_DETECTIVES + 1, ROUNDS,
+				folder.newFile().toPath());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoRoundsThrows() throws IOException {
+		TablebaseGenerator.write(graph, 1, 0, folder.newFile().toPath());
+	}
+
+	// Mr.X sees everything, moves over any edge and the detective chases him in plain sight
+	private boolean survives(int left, int mrX, int detective) {
+		if (left == 0) return true;
+		for (int destination : neighbours(mrX, true))
+			if (destination != detective && escapes(left, destination, detective)) return true;
+		return false;
+	}
+
+	private boolean escapes(int left, int mrX, int detective) {
+		Set<Integer> replies = neighbours(detective, false);
+		if (replies.isEmpty()) replies = Collections.singleton(detective);
+		for (int reply : replies)
+			if (reply == mrX || !survives(left - 1, mrX, reply)) return false;
+		return true;
+	}
+
+	private Set<Integer> neighbours(int value, boolean boats) {
+		Set<Integer> neighbours = new LinkedHashSet<>();
+		for (Edge<Integer, Transport> edge : graph.getEdgesFrom(graph.getNode(value)))
+			if (boats || edge.data() != Transport.Boat)
+				neighbours.add(edge.destination().value());
+		return neighbours;
+	}
+
+	private GameState state(int left, int secret, int mrX, int detective) {
+		return state(left, 4, 3, 3, secret, mrX, detective);
+	}
+
+	private GameState state(int left, int taxi, int bus, int underground, int secret, int mrX,
+			int detective) {
+		List<Boolean> rounds = new ArrayList<>(Collections.nCopies(left, false));
+		ScotlandYardModel model = new ScotlandYardModel(rounds, graph,
+				player(Black, mrX, taxi, bus, underground, 0, secret),
+				player(Blue, detective, 11, 8, 4, 0, 0));
+		return GameState.of(model, mrX);
+	}
+
+	private static PlayerConfiguration player(Colour colour, int location,
+			int taxi, int bus, int underground, int x2, int secret) {
+		Map<Ticket, Integer> tickets = new HashMap<>();
+		tickets.put(Ticket.Taxi, taxi);
+		tickets.put(Ticket.Bus, bus);
+		tickets.put(Ticket.Underground, underground);
+		tickets.put(Ticket.Double, x2);
+		tickets.put(Ticket.Secret, secret);
+		return new PlayerConfiguration.Builder(colour).using(IDLE).with(tickets).at(location)
+				.build();
+	}
+
+}
@@ -0,0 +1,135 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.EXACT;
+import static uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.LOWER;
+import static uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.MISSING;
+import static uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.UPPER;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+/**
+ * Tests for {@link TranspositionTable}
+ */
+public class TranspositionTableTest {
+
+	private static final int BITS = 4;
+	private static final long KEY = 0x5DEECE66DL << 20 | 3;
+	private static final long OTHER = KEY + (1L << BITS) * 7; // same slot as KEY
+	private static final long MOVE = PackedMove.ticketMove(Ticket.Bus, 58);
+	private static final long OTHER_MOVE = PackedMove.ticketMove(Ticket.Taxi, 46);
+
+	@Test
+	public void testStoredEntryRoundTrips() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		table.store(KEY, 5, EXACT, -1234, MOVE);
+		int entry = table.probe(KEY);
+		assertThat(entry).isNotEqualTo(MISSING);
+		assertThat(table.score(entry)).isEqualTo(-1234);
+		assertThat(table.depth(entry)).isEqualTo(5);
+		assertThat(table.bound(entry)).isEqualTo(EXACT);
+		assertThat(table.move(KEY)).isEqualTo(MOVE);
+	}
+
+	@Test
+	public void testBoundsRoundTrip() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		for (int bound : new int[] { EXACT, LOWER, UPPER }) {
+			long key = KEY + bound;
+			table.store(key, bound, bound, bound * 100, MOVE);
+			assertThat(table.bound(table.probe(key))).isEqualTo(bound);
+			assertThat(table.score(table.probe(key))).isEqualTo(bound * 100);
+		}
+	}
+
+	@Test
+	public void testScoreAndDepthAreClamped() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		table.store(KEY, 100, LOWER, 1 << 20, MOVE);
+		table.store(KEY + 1, 1, UPPER, -(1 << 20), MOVE);
+		assertThat(table.score(table.probe(KEY))).isEqualTo(Short.MAX_VALUE);
+		assertThat(table.depth(table.probe(KEY))).isEqualTo(63);
+		assertThat(table.score(table.probe(KEY + 1))).isEqualTo(Short.MIN_VALUE);
+	}
+
+	@Test
+	public void testUnstoredKeyIsMissing() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		assertThat(table.probe(KEY)).isEqualTo(MISSING);
+		assertThat(table.move(KEY)).isEqualTo(PackedMove.PASS);
+	}
+
+	@Test
+	public void testKeySharingSlotIsMissing() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		table.store(KEY, 5, EXACT, 10, MOVE);
+		assertThat(table.probe(OTHER)).isEqualTo(MISSING);
+		assertThat(table.move(OTHER)).isEqualTo(PackedMove.PASS);
+	}
+
+	@Test
+	public void testShallowerResultDoesNotReplaceDeeperOne() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		table.nextGeneration();
+		table.store(KEY, 6, EXACT, 10, MOVE);
+		table.store(OTHER, 2, EXACT, 20, OTHER_MOVE);
+		assertThat(table.probe(OTHER)).isEqualTo(MISSING);
+		assertThat(table.score(table.probe(KEY))).isEqualTo(10);
+
+		table.store(OTHER, 6, LOWER, 20, OTHER_MOVE);
+		assertThat(table.probe(KEY)).isEqualTo(MISSING);
+		assertThat(table.score(table.probe(OTHER))).isEqualTo(20);
+	}
+
+	@Test
+	public void testNextGenerationReplacesDeeperResult() {
+		TranspositionTable table = new TranspositionTable(BITS);
+		table.nextGeneration();
+		table.store(KEY, 6, EXACT, 10, MOVE);
+		table.nextGeneration();
+		// still usable until replaced
+		assertThat(table.score(table.probe(KEY))).isEqualTo(10);
+		table.store(OTHER, 1, UPPER, 20, OTHER_MOVE);
+		assertThat(table.probe(KEY)).isEqualTo(MISSING);
+		assertThat(table.move(OTHER)).isEqualTo(OTHER_MOVE);
+	}
+
+	@Test
+	public void testTornEntryIsMissing() throws Exception {
+		TranspositionTable table = new TranspositionTable(BITS);
+		int slot = (int) KEY & ((1 << BITS) - 1);
+		table.store(KEY, 5, EXACT, 10, MOVE);
+		long[] keys = field(table, "keys");
+		long firstKey = keys[slot];
+		table.store(OTHER, 6, LOWER, 20, OTHER_MOVE);
+		// the key of the first write with the move and data of the second, as
+		// left by two threads storing into the slot at once
+		keys[slot] = firstKey;
+		assertThat(table.probe(KEY)).isEqualTo(MISSING);
+		assertThat(table.probe(OTHER)).isEqualTo(MISSING);
+		assertThat(table.move(KEY)).isEqualTo(PackedMove.PASS);
+		assertThat(table.move(OTHER)).isEqualTo(PackedMove.PASS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooSmallTableThrows() {
+		new TranspositionTable(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooLargeTableThrows() {
+		new TranspositionTable(29);
+	}
+
+	private static long[] field(TranspositionTable table, String name) throws Exception {
+		Field field = TranspositionTable.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return (long[]) field.get(table);
+	}
+
+}
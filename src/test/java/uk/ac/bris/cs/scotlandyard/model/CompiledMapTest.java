@@ -0,0 +1,130 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+
+/**
+ * Tests for {@link CompiledMap}, round-tripping the standard map resources
+ */
+public class CompiledMapTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private ImmutableGraph<Integer, Transport> graph;
+	private Map<Integer, Entry<Integer, Integer>> positions;
+	private Path path;
+
+	@Before
+	public void setUp() throws IOException {
+		try (InputStream stream = getClass().getResourceAsStream("/graph.txt")) {
+			graph = ScotlandYardGraphReader.fromStream(stream);
+		}
+		try (InputStream stream = getClass().getResourceAsStream("/pos.txt")) {
+			positions = StandardGame.positionsFromStream(stream);
+		}
+		path = folder.getRoot().toPath().resolve("map.bin");
+	}
+
+	@Test
+	public void testToGraphEqualsTextMap() throws IOException {
+		CompiledMap.write(path, graph, positions);
+		ImmutableGraph<Integer, Transport> compiled = CompiledMap.load(path).toGraph();
+		assertThat(compiled.getNodes()).containsExactlyElementsOf(graph.getNodes());
+		assertThat(compiled.getEdges()).containsExactlyElementsOf(graph.getEdges());
+		for (Node<Integer> node : graph.getNodes())
+			assertThat(compiled.getEdgesFrom(node)).containsExactlyElementsOf(
+					graph.getEdgesFrom(node));
+	}
+
+	@Test
+	public void testPositionsEqualTextPositions() throws IOException {
+		CompiledMap.write(path, graph, positions);
+		assertThat(positions).isNotEmpty();
+		assertThat(CompiledMap.load(path).positions()).isEqualTo(positions);
+	}
+
+	@Test
+	public void testRowsEqualEdgesFrom() throws IOException {
+		CompiledMap.write(path, graph, positions);
+		CompiledMap map = CompiledMap.load(path);
+		assertThat(map.nodes()).isEqualTo(graph.size());
+		assertThat(map.edges()).isEqualTo(graph.getEdges().size() / 2);
+		assertThat(map.size()).isEqualTo(200);
+		for (int value = 0; value < map.size(); value++) {
+			List<Entry<Integer, Transport>> row = new ArrayList<>();
+			for (int edge = map.start(value); edge < map.end(value); edge++)
+				row.add(entry(map.target(edge), map.transport(edge)));
+			List<Entry<Integer, Transport>> expected = new ArrayList<>();
+			if (graph.containsNode(value))
+				for (Edge<Integer, Transport> edge : graph.getEdgesFrom(graph.getNode(value)))
+					expected.add(entry(edge.destination().value(), edge.data()));
+			assertThat(row).as("edges from %d", value).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testWithoutPositions() throws IOException {
+		CompiledMap.write(path, graph, Collections.emptyMap());
+		CompiledMap map = CompiledMap.load(path);
+		assertThat(map.positions()).isEmpty();
+		assertThat(map.toGraph().getEdges()).containsExactlyElementsOf(graph.getEdges());
+	}
+
+	@Test
+	public void testStandardGameReadsTextMapWithoutProperty() throws IOException {
+		String property = System.clearProperty(StandardGame.MAP_PROPERTY);
+		try {
+			assertThat(StandardGame.compiledMap()).isNull();
+		} finally {
+			if (property != null) System.setProperty(StandardGame.MAP_PROPERTY, property);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotACompiledMapThrows() throws IOException {
+		Files.write(path, Arrays.asList("199 468", "1", "2"));
+		CompiledMap.load(path);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedMapThrows() throws IOException {
+		CompiledMap.write(path, graph, positions);
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+		CompiledMap.load(path);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeNodeThrows() throws IOException {
+		UndirectedGraph<Integer, Transport> negative = new UndirectedGraph<>();
+		negative.addNode(new Node<>(-1));
+		CompiledMap.write(path, negative, Collections.emptyMap());
+	}
+
+	private static Entry<Integer, Transport> entry(int target, Transport transport) {
+		return new SimpleImmutableEntry<>(target, transport);
+	}
+
+}
@@ -0,0 +1,117 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+
+/**
+ * Tests for {@link MapGenerator}
+ */
+public class MapGeneratorTest {
+
+	private static final int[] SIZES = { MapGenerator.MIN_NODES, 199, 1000 };
+	private static final long[] SEEDS = { 0, 1, 42 };
+
+	@Test
+	public void testMapIsConnected() {
+		for (int nodes : SIZES) {
+			for (long seed : SEEDS) {
+				ImmutableGraph<Integer, Transport> graph = MapGenerator.generate(nodes, seed)
+						.graph();
+				assertThat(graph.size()).isEqualTo(nodes);
+				assertThat(reachable(graph, EnumSet.allOf(Transport.class)))
+						.as("%d nodes, seed %d", nodes, seed).hasSize(nodes);
+			}
+		}
+	}
+
+	@Test
+	public void testTaxisAloneConnectTheMap() {
+		for (long seed : SEEDS)
+			assertThat(reachable(MapGenerator.generate(1000, seed).graph(),
+					EnumSet.of(Transport.Taxi))).hasSize(1000);
+	}
+
+	@Test
+	public void testEveryTransportIsUsed() {
+		Set<Transport> used = EnumSet.noneOf(Transport.class);
+		for (Edge<Integer, Transport> edge : MapGenerator.generate(1000, 0).graph().getEdges())
+			used.add(edge.data());
+		assertThat(used).containsOnly(Transport.values());
+	}
+
+	@Test
+	public void testWrittenGraphReadsBackEqual() throws IOException {
+		for (int nodes : SIZES) {
+			for (long seed : SEEDS) {
+				MapGenerator map = MapGenerator.generate(nodes, seed);
+				StringWriter writer = new StringWriter();
+				map.writeGraph(writer);
+				ImmutableGraph<Integer, Transport> read = ScotlandYardGraphReader
+						.fromLines(Arrays.asList(writer.toString().split("\n")));
+				ImmutableGraph<Integer, Transport> graph = map.graph();
+				assertThat(read.getNodes()).containsExactlyElementsOf(graph.getNodes());
+				assertThat(read.getEdges()).containsExactlyElementsOf(graph.getEdges());
+				assertThat(graph.getEdges()).hasSize(2 * map.edges());
+			}
+		}
+	}
+
+	@Test
+	public void testWrittenPositionsReadBackEqual() throws IOException {
+		MapGenerator map = MapGenerator.generate(1000, 1);
+		StringWriter writer = new StringWriter();
+		map.writePositions(writer);
+		assertThat(StandardGame.positionsFromLines(
+				Arrays.asList(writer.toString().split("\n")))).isEqualTo(map.positions());
+		assertThat(map.positions()).hasSize(1000);
+	}
+
+	@Test
+	public void testSameSeedGivesSameMap() {
+		assertThat(MapGenerator.generate(1000, 7).graph().getEdges())
+				.containsExactlyElementsOf(MapGenerator.generate(1000, 7).graph().getEdges());
+		assertThat(MapGenerator.generate(1000, 7).graph().getEdges())
+				.isNotEqualTo(MapGenerator.generate(1000, 8).graph().getEdges());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooFewNodesThrows() {
+		MapGenerator.generate(MapGenerator.MIN_NODES - 1, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyNodesThrows() {
+		MapGenerator.generate(MapGenerator.MAX_NODES + 1, 0);
+	}
+
+	private static Set<Integer> reachable(ImmutableGraph<Integer, Transport> graph,
+			Set<Transport> transports) {
+		Set<Integer> seen = new HashSet<>();
+		Deque<Node<Integer>> queue = new ArrayDeque<>();
+		Node<Integer> start = graph.getNodes().get(0);
+		seen.add(start.value());
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			for (Edge<Integer, Transport> edge : graph.getEdgesFrom(queue.poll())) {
+				if (transports.contains(edge.data()) && seen.add(edge.destination().value()))
+					queue.add(edge.destination());
+			}
+		}
+		return seen;
+	}
+
+}
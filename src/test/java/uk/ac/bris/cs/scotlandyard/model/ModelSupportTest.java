@@ -0,0 +1,17 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Includes all tests for the classes the game model is built from
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+		CompiledMapTest.class,
+		MapGeneratorTest.class,
+		MoveTest.class,
+		PlayerConfigurationTest.class,
+		ScotlandYardGraphReaderTest.class,
+		TicketWalletTest.class })
+public class ModelSupportTest {}
@@ -1,10 +1,16 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -56,4 +62,34 @@ public class ScotlandYardGraphReaderTest {
 		ScotlandYardGraphReader.fromLines(Arrays.asList("2 1", "1", "2", "Foo Bar Baz"));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testStreamReadsSameGraphAsLines() throws IOException {
+		List<String> lines = Arrays.asList("3 2", "1", "2", "3", "1 2 Taxi", "2 3 Bus");
+		ImmutableGraph<Integer, Transport> graph = ScotlandYardGraphReader.fromStream(
+				new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(ScotlandYardGraphReader.fromLines(lines), graph);
+	}
+
+	@Test
+	public void testChannelReadsSameGraphAsLines() throws IOException {
+		List<String> lines = Arrays.asList("3 2", "1", "2", "3", "1 2 Taxi", "2 3 Bus");
+		ImmutableGraph<Integer, Transport> graph = ScotlandYardGraphReader.fromChannel(
+				Channels.newChannel(new ByteArrayInputStream(
+						String.join("\n", lines).getBytes(StandardCharsets.UTF_8))));
+
+		assertEquals(ScotlandYardGraphReader.fromLines(lines), graph);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamWithBadEdgeCountShouldThrow() throws IOException {
+		ScotlandYardGraphReader.fromStream(new ByteArrayInputStream(
+				"3 5\n1\n2\n3\n1 2 Boat".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyStreamShouldThrow() throws IOException {
+		ScotlandYardGraphReader.fromStream(new ByteArrayInputStream(new byte[0]));
+	}
+
+}
@@ -0,0 +1,178 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration.Builder;
+
+/**
+ * Tests for {@link TicketWallet}
+ */
+public class TicketWalletTest {
+
+	private static Map<Ticket, Integer> tickets() {
+		Map<Ticket, Integer> map = new HashMap<>();
+		map.put(Ticket.Taxi, 4);
+		map.put(Ticket.Bus, 0);
+		map.put(Ticket.Secret, 5);
+		return map;
+	}
+
+	@Test
+	public void testEqualsAndHashCodeMatchHashMap() {
+		Map<Ticket, Integer> map = tickets();
+		TicketWallet wallet = TicketWallet.copyOf(map);
+		assertThat(wallet).isEqualTo(map);
+		assertThat(map).isEqualTo(wallet);
+		assertThat(wallet.hashCode()).isEqualTo(map.hashCode());
+		assertThat(wallet.entrySet()).isEqualTo(map.entrySet());
+		assertThat(wallet.toString()).isEqualTo(new EnumMap<>(map).toString());
+	}
+
+	@Test
+	public void testZeroCountIsNotEqualToAbsentTicket() {
+		Map<Ticket, Integer> map = tickets();
+		map.remove(Ticket.Bus);
+		TicketWallet wallet = TicketWallet.copyOf(tickets());
+		assertThat(wallet).isNotEqualTo(map);
+		assertThat(TicketWallet.copyOf(map)).isEqualTo(map);
+	}
+
+	@Test
+	public void testAbsentAndZeroCounts() {
+		TicketWallet wallet = TicketWallet.copyOf(tickets());
+		assertThat(wallet.contains(Ticket.Bus)).isTrue();
+		assertThat(wallet.containsKey(Ticket.Bus)).isTrue();
+		assertThat(wallet.get(Ticket.Bus)).isEqualTo(0);
+		assertThat(wallet.count(Ticket.Bus)).isZero();
+
+		assertThat(wallet.contains(Ticket.Underground)).isFalse();
+		assertThat(wallet.containsKey(Ticket.Underground)).isFalse();
+		assertThat(wallet.get(Ticket.Underground)).isNull();
+		assertThat(wallet.count(Ticket.Underground)).isZero();
+		assertThat(wallet.has(Ticket.Underground, 1)).isFalse();
+		assertThat(wallet.size()).isEqualTo(3);
+	}
+
+	@Test
+	public void testEmptyWalletHasNoTickets() {
+		TicketWallet wallet = TicketWallet.empty();
+		assertThat(wallet).isEmpty();
+		assertThat(wallet).isEqualTo(new HashMap<>());
+		for (Ticket ticket : Ticket.values())
+			assertThat(wallet.contains(ticket)).isFalse();
+	}
+
+	@Test
+	public void testAddStartsFromZeroForAbsentTicket() {
+		TicketWallet wallet = TicketWallet.copyOf(tickets());
+		wallet.add(Ticket.Double, 2);
+		wallet.add(Ticket.Taxi, -1);
+		assertThat(wallet.get(Ticket.Double)).isEqualTo(2);
+		assertThat(wallet.get(Ticket.Taxi)).isEqualTo(3);
+		assertThat(wallet.has(Ticket.Taxi, 3)).isTrue();
+		assertThat(wallet.has(Ticket.Taxi, 4)).isFalse();
+	}
+
+	@Test
+	public void testPutAndRemoveLikeHashMap() {
+		Map<Ticket, Integer> map = tickets();
+		TicketWallet wallet = TicketWallet.copyOf(map);
+		assertThat(wallet.put(Ticket.Taxi, 7)).isEqualTo(map.put(Ticket.Taxi, 7));
+		assertThat(wallet.put(Ticket.Double, 1)).isEqualTo(map.put(Ticket.Double, 1));
+		assertThat(wallet.remove(Ticket.Bus)).isEqualTo(map.remove(Ticket.Bus));
+		assertThat(wallet.remove(Ticket.Bus)).isEqualTo(map.remove(Ticket.Bus));
+		assertThat(wallet.remove("Bus")).isNull();
+		assertThat(wallet).isEqualTo(map);
+		wallet.clear();
+		assertThat(wallet).isEmpty();
+	}
+
+	@Test
+	public void testIteratorRemovesCurrentEntry() {
+		TicketWallet wallet = TicketWallet.copyOf(tickets());
+		Iterator<Entry<Ticket, Integer>> iterator = wallet.entrySet().iterator();
+		// present tickets in ordinal order: Bus, Taxi, Secret
+		assertThat(iterator.next().getKey()).isEqualTo(Ticket.Bus);
+		iterator.remove();
+		assertThat(iterator.next().getKey()).isEqualTo(Ticket.Taxi);
+		assertThat(iterator.next().getKey()).isEqualTo(Ticket.Secret);
+		iterator.remove();
+		assertThat(iterator.hasNext()).isFalse();
+		assertThat(wallet).containsOnlyKeys(Ticket.Taxi);
+		assertThat(wallet.contains(Ticket.Bus)).isFalse();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIteratorRemoveBeforeNextThrows() {
+		TicketWallet.copyOf(tickets()).entrySet().iterator().remove();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIteratorRemoveTwiceThrows() {
+		Iterator<Entry<Ticket, Integer>> iterator = TicketWallet.copyOf(tickets()).entrySet()
+				.iterator();
+		iterator.next();
+		iterator.remove();
+		iterator.remove();
+	}
+
+	@Test
+	public void testKeySetAndValuesRemoveThroughIterator() {
+		TicketWallet wallet = TicketWallet.copyOf(tickets());
+		wallet.keySet().remove(Ticket.Taxi);
+		wallet.values().removeIf(count -> count == 0);
+		assertThat(wallet).containsOnlyKeys(Ticket.Secret);
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		Map<Ticket, Integer> map = tickets();
+		TicketWallet wallet = TicketWallet.copyOf(map);
+		TicketWallet copy = TicketWallet.copyOf(wallet);
+		map.put(Ticket.Taxi, 0);
+		wallet.add(Ticket.Secret, -5);
+		assertThat(wallet.count(Ticket.Taxi)).isEqualTo(4);
+		assertThat(copy.count(Ticket.Secret)).isEqualTo(5);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullCountThrows() {
+		Map<Ticket, Integer> map = tickets();
+		map.put(Ticket.Double, null);
+		TicketWallet.copyOf(map);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullTicketThrows() {
+		Map<Ticket, Integer> map = tickets();
+		map.put(null, 1);
+		TicketWallet.copyOf(map);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testBuilderWithNullCountThrows() {
+		// the builder used to keep the map itself, null counts and all
+		Map<Ticket, Integer> map = tickets();
+		map.put(Ticket.Double, null);
+		new Builder(Colour.Black).with(map);
+	}
+
+	@Test
+	public void testBuilderCopiesTickets() {
+		Map<Ticket, Integer> map = tickets();
+		PlayerConfiguration configuration = new Builder(Colour.Black)
+				.using((view, location, moves, callback) -> {}).with(map).at(45).build();
+		map.put(Ticket.Taxi, 0);
+		assertThat(configuration.tickets).isInstanceOf(TicketWallet.class);
+		assertThat(configuration.tickets.get(Ticket.Taxi)).isEqualTo(4);
+	}
+
+}